@@ -0,0 +1,51 @@
+package com.unir.products.benchmark;
+
+import com.unir.products.controller.model.CreateBookRequest;
+import com.unir.products.data.model.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/* Operaciones individuales del servicio: lectura por id, alta y PATCH (JSON Merge Patch) */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    private final SplittableRandom random = new SplittableRandom(42);
+    private long created;
+
+    @Benchmark
+    public Book getBook(CatalogueState state) {
+        return state.service.getBook(String.valueOf(state.randomId(random)));
+    }
+
+    @Benchmark
+    public ArrayList<Object> createBook(CatalogueState state) {
+        long n = ++created;
+        CreateBookRequest request = new CreateBookRequest("Benchmark " + System.nanoTime() + "-" + n, "Autor benchmark",
+                LocalDate.of(2024, 1, 1), "Editorial benchmark", "Benchmark", "BENCH-" + System.nanoTime() + "-" + n,
+                "https://example.org/portada.jpg", "Sinopsis de benchmark", 3.0, true, 10, 19.9);
+        return state.service.createBook(request);
+    }
+
+    @Benchmark
+    public Book patchBook(CatalogueState state) {
+        String patch = "{\"precio\": " + (10 + random.nextInt(40)) + ".5, \"stock\": " + random.nextInt(100) + "}";
+        return state.service.updateBook(String.valueOf(state.randomId(random)), patch);
+    }
+}
@@ -0,0 +1,101 @@
+package com.unir.products.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unir.products.ProductsApplication;
+import com.unir.products.data.BookRepository;
+import com.unir.products.service.BooksService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.random.RandomGenerator;
+
+/* Contexto de Spring sin capa web sobre un H2 en memoria sembrado con insert_libros.sql y
+   escalado con filas sinteticas. Compartido por todos los benchmarks. */
+@State(Scope.Benchmark)
+public class CatalogueState {
+
+    //Las filas semilla tienen ids 1..SEED_ROWS; las sinteticas usan ids (copia * 100 + id semilla)
+    private static final int SEED_ROWS = 20;
+
+    @Param({"100000"})
+    public int rows;
+
+    public ConfigurableApplicationContext context;
+    public BooksService service;
+    public BookRepository repository;
+    public ObjectMapper objectMapper;
+    public Statistics statistics;
+    public long maxId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(ProductsApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:bench-" + System.nanoTime() + ";Mode=MySQL",
+                        "spring.sql.init.mode=never",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.generate_statistics=true",
+                        //las busquedas se miden contra la base de datos, sin la cache de resultados
+                        "catalogue.cache.search.max-memory=0",
+                        "eureka.client.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+        service = context.getBean(BooksService.class);
+        repository = context.getBean(BookRepository.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        DataSource dataSource = context.getBean(DataSource.class);
+        new ResourceDatabasePopulator(new FileSystemResource("insert_libros.sql")).execute(dataSource);
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        int copies = Math.max(0, rows / SEED_ROWS - 1);
+        jdbc.update("""
+                INSERT INTO libros (id, titulo, autor, fecha_de_publicacion, editorial, categoria, ISBN, portada, sinopsis, valoracion, visible, stock, precio)
+                SELECT s.x * 100 + l.id,
+                       CONCAT(l.titulo, ' ', s.x),
+                       CONCAT(l.autor, ' ', MOD(s.x, 500)),
+                       DATEADD('DAY', -MOD(s.x * 7, 7300), l.fecha_de_publicacion),
+                       CONCAT(l.editorial, ' ', MOD(s.x, 50)),
+                       l.categoria,
+                       CONCAT(l.ISBN, '-', s.x),
+                       l.portada,
+                       l.sinopsis,
+                       MOD(s.x + l.id, 5) + 1,
+                       MOD(s.x, 7) <> 0,
+                       MOD(s.x * l.id, 40),
+                       ROUND(5 + MOD(s.x * 13 + l.id, 4500) / 100.0, 2)
+                FROM libros l CROSS JOIN SYSTEM_RANGE(1, ?) s
+                WHERE l.id <= ?""", copies, SEED_ROWS);
+
+        maxId = jdbc.queryForObject("SELECT MAX(id) FROM libros", Long.class);
+        jdbc.execute("ALTER SEQUENCE libros_seq RESTART WITH " + (maxId + 1000));
+        repository.rebuildIndexes();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /* Id existente al azar (semilla o sintetico) */
+    public long randomId(RandomGenerator random) {
+        int copy = random.nextInt(rows / SEED_ROWS);
+        return copy * 100L + 1 + random.nextInt(SEED_ROWS);
+    }
+}
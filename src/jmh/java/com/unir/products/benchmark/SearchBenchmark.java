@@ -0,0 +1,68 @@
+package com.unir.products.benchmark;
+
+import com.unir.products.controller.model.BookSearchCriteria;
+import com.unir.products.data.model.Book;
+import com.unir.products.data.model.BookSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* BookRepository.search (a traves de BooksService) para distintas combinaciones de criterios */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"none", "titulo", "autor+editorial", "categoria", "precio", "categoria+precio+conStock", "visible+valoracion", "sort-precio"})
+    public String shape;
+
+    private BookSearchCriteria criteria;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        criteria = new BookSearchCriteria();
+        criteria.setLimit(100);
+        for (String field : shape.split("\\+")) {
+            switch (field) {
+                case "titulo" -> criteria.setTitulo("sangre");
+                case "autor" -> criteria.setAutor("yarros");
+                case "editorial" -> criteria.setEditorial("planeta");
+                case "categoria" -> criteria.setCategoria("Fantasía romántica");
+                case "precio" -> {
+                    criteria.setPrecioMin(15.0);
+                    criteria.setPrecioMax(25.0);
+                }
+                case "conStock" -> criteria.setConStock(true);
+                case "visible" -> criteria.setVisible(true);
+                case "valoracion" -> criteria.setValoracionMin(4.0);
+                case "sort-precio" -> criteria.setSort("-precio");
+                default -> { }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Book> search(CatalogueState state) {
+        return state.service.getBooks(criteria);
+    }
+
+    @Benchmark
+    public List<BookSummary> searchSummaries(CatalogueState state) {
+        return state.service.getBookSummaries(criteria);
+    }
+}
@@ -0,0 +1,54 @@
+package com.unir.products.benchmark;
+
+import com.unir.products.controller.model.BookSearchCriteria;
+import com.unir.products.data.model.Book;
+import com.unir.products.data.model.BookSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Serializacion de un listado con el ObjectMapper de BeanConfig, completo y resumido */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"100", "1000"})
+    public int pageSize;
+
+    private List<Book> books;
+    private List<BookSummary> summaries;
+
+    @Setup(Level.Trial)
+    public void setUp(CatalogueState state) {
+        BookSearchCriteria criteria = new BookSearchCriteria();
+        criteria.setLimit(pageSize);
+        books = state.service.getBooks(criteria);
+        summaries = state.service.getBookSummaries(criteria);
+    }
+
+    @Benchmark
+    public byte[] serializeBooks(CatalogueState state) throws Exception {
+        return state.objectMapper.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public byte[] serializeSummaries(CatalogueState state) throws Exception {
+        return state.objectMapper.writeValueAsBytes(summaries);
+    }
+}
@@ -0,0 +1,92 @@
+package com.unir.products.benchmark;
+
+import com.unir.products.controller.model.BookDto;
+import com.unir.products.data.model.Book;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/* PUT/PATCH que solo cambian el stock frente a PUT sin cambios. Ademas del throughput, se
+   informa del numero de sentencias JDBC por operacion (contador auxiliar "statements"). */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateBenchmark {
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Statements {
+        public long statements;
+    }
+
+    private final SplittableRandom random = new SplittableRandom(7);
+    private BookDto unchanged;
+    private long unchangedId;
+
+    @Setup(Level.Trial)
+    public void setUp(CatalogueState state) {
+        unchangedId = state.randomId(random);
+        Book book = state.service.getBook(String.valueOf(unchangedId));
+        unchanged = toDto(book);
+    }
+
+    @Benchmark
+    public Book putStockOnly(CatalogueState state, Statements counters) {
+        long before = state.statistics.getPrepareStatementCount();
+        String id = String.valueOf(state.randomId(random));
+        BookDto dto = toDto(state.service.getBook(id));
+        dto.setStock(random.nextInt(1000));
+        Book updated = state.service.updateBook(id, dto);
+        counters.statements += state.statistics.getPrepareStatementCount() - before;
+        return updated;
+    }
+
+    @Benchmark
+    public Book putUnchanged(CatalogueState state, Statements counters) {
+        long before = state.statistics.getPrepareStatementCount();
+        Book updated = state.service.updateBook(String.valueOf(unchangedId), unchanged);
+        counters.statements += state.statistics.getPrepareStatementCount() - before;
+        return updated;
+    }
+
+    @Benchmark
+    public Book patchStockOnly(CatalogueState state, Statements counters) {
+        long before = state.statistics.getPrepareStatementCount();
+        Book updated = state.service.updateBook(String.valueOf(state.randomId(random)),
+                "{\"stock\": " + random.nextInt(1000) + "}");
+        counters.statements += state.statistics.getPrepareStatementCount() - before;
+        return updated;
+    }
+
+    private static BookDto toDto(Book book) {
+        return BookDto.builder()
+                .titulo(book.getTitulo())
+                .autor(book.getAutor())
+                .fecha_de_publicacion(book.getFecha_de_publicacion())
+                .editorial(book.getEditorial())
+                .categoria(book.getCategoria())
+                .isbn(book.getIsbn())
+                .portada(book.getPortada())
+                .sinopsis(book.getSinopsis())
+                .valoracion(book.getValoracion())
+                .visible(book.getVisible())
+                .stock(book.getStock())
+                .precio(book.getPrecio())
+                .build();
+    }
+}
@@ -2,7 +2,9 @@ package com.unir.products.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.unir.products.data.cache.BookJsonCache;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -12,10 +14,12 @@ public class BeanConfig {
 
     @Bean
     @Primary //este es el ObjectMapper principal a usar
-    public ObjectMapper objectMapper() {
+    public ObjectMapper objectMapper(BookJsonCache bookJsonCache) {
         ObjectMapper mapper = new ObjectMapper();
         mapper.registerModule(new JavaTimeModule()); //para poder mapear fechas de tipo LocalDate, LocalDateTime, etc.
         mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        //los libros se serializan una vez por version y se reutilizan los bytes
+        mapper.registerModule(new SimpleModule().setSerializerModifier(CachedBookSerializer.modifier(bookJsonCache, mapper)));
 
         return mapper;
     }
@@ -0,0 +1,88 @@
+package com.unir.products.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.unir.products.data.cache.BookJsonCache;
+import com.unir.products.data.cache.RawJsonBytes;
+import com.unir.products.data.model.Book;
+
+import java.io.IOException;
+
+/* Serializa cada libro una sola vez por version: los bytes UTF-8 se guardan en BookJsonCache y las
+   respuestas (un libro o un listado) los copian directamente al buffer de salida. Los libros sin id
+   o sin version (aun no persistidos) se serializan normalmente, igual que las escrituras que llevan
+   el atributo SKIP_CACHE (la exportacion recorre todo el catalogo una vez y expulsaria los libros
+   que si se repiten). Los bytes se codifican con el JsonFactory del propio ObjectMapper. */
+public class CachedBookSerializer extends StdSerializer<Book> implements ResolvableSerializer {
+
+    //ObjectWriter.withAttribute(SKIP_CACHE, true): se serializa sin leer ni llenar la cache
+    public static final String SKIP_CACHE = CachedBookSerializer.class.getName() + ".skipCache";
+
+    private final JsonSerializer<Object> delegate;
+    private final BookJsonCache cache;
+    private final ObjectMapper mapper;
+
+    @SuppressWarnings("unchecked")
+    public CachedBookSerializer(JsonSerializer<?> delegate, BookJsonCache cache, ObjectMapper mapper) {
+        super(Book.class);
+        this.delegate = (JsonSerializer<Object>) delegate;
+        this.cache = cache;
+        this.mapper = mapper;
+    }
+
+    /* Registra el serializador sobre el generado por Jackson para Book */
+    public static BeanSerializerModifier modifier(BookJsonCache cache, ObjectMapper mapper) {
+        return new BeanSerializerModifier() {
+            @Override
+            public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription description, JsonSerializer<?> serializer) {
+                return description.getBeanClass() == Book.class && cache.isEnabled()
+                        ? new CachedBookSerializer(serializer, cache, mapper)
+                        : serializer;
+            }
+        };
+    }
+
+    @Override
+    public void resolve(SerializerProvider provider) throws JsonMappingException {
+        if (delegate instanceof ResolvableSerializer resolvable) {
+            resolvable.resolve(provider);
+        }
+    }
+
+    @Override
+    public void serialize(Book book, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        if (book.getId() == null || book.getVersion() == null || Boolean.TRUE.equals(provider.getAttribute(SKIP_CACHE))) {
+            delegate.serialize(book, generator, provider);
+            return;
+        }
+        RawJsonBytes json = cache.get(book.getId(), book.getVersion());
+        if (json == null) {
+            json = encode(book, provider);
+            cache.put(book.getId(), book.getVersion(), json);
+        }
+        generator.writeRawValue(json);
+    }
+
+    @Override
+    public void serializeWithType(Book book, JsonGenerator generator, SerializerProvider provider, TypeSerializer typeSerializer) throws IOException {
+        delegate.serializeWithType(book, generator, provider, typeSerializer);
+    }
+
+    private RawJsonBytes encode(Book book, SerializerProvider provider) throws IOException {
+        try (ByteArrayBuilder bytes = new ByteArrayBuilder(); JsonGenerator generator = mapper.getFactory().createGenerator(bytes)) {
+            delegate.serialize(book, generator, provider);
+            generator.flush();
+            return new RawJsonBytes(bytes.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.unir.products.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/* Modo de hilos virtuales: spring.threads.virtual.enabled hace que Tomcat atienda cada peticion (y
+   por tanto las llamadas al servicio y al repositorio) en un hilo virtual. Como cada peticion sigue
+   bloqueando en JDBC, el acceso al pool se limita con ConnectionLimitingDataSource. */
+@Configuration
+public class ConcurrencyConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "catalogue.datasource.limiter", name = "enabled", havingValue = "true")
+    public static BeanPostProcessor connectionLimiter(Environment environment) {
+        int maxConcurrent = environment.getProperty("catalogue.datasource.limiter.max-concurrent", Integer.class, 10);
+        Duration acquireTimeout = environment.getProperty("catalogue.datasource.limiter.acquire-timeout", Duration.class, Duration.ofSeconds(5));
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConnectionLimitingDataSource)) {
+                    return new ConnectionLimitingDataSource(dataSource, maxConcurrent, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package com.unir.products.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/* Metricas expuestas en /actuator/prometheus:
+   - http.server.requests: latencia por endpoint (Spring Boot), con histograma activado en application.yml.
+   - catalogue.service: metodos de BooksServiceImpl (@Timed).
+   - catalogue.search y catalogue.search.rows: duracion y filas por forma de busqueda (BookRepository).
+   - catalogue.http.payload: tamaño de las respuestas por endpoint.
+   - hikaricp.connections.acquire y catalogue.datasource.limiter.wait: espera por conexiones. */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    public FilterRegistrationBean<PayloadSizeFilter> payloadSizeFilter(MeterRegistry registry) {
+        FilterRegistrationBean<PayloadSizeFilter> registration = new FilterRegistrationBean<>(new PayloadSizeFilter(registry));
+        registration.addUrlPatterns("/books", "/books/*");
+        return registration;
+    }
+}
@@ -0,0 +1,74 @@
+package com.unir.products.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Modo con replicas de lectura: las transacciones de solo lectura (@Transactional(readOnly = true))
+   toman la conexion de ReplicaDataSource y el resto del primario (spring.datasource).
+   LazyConnectionDataSourceProxy retrasa la conexion real hasta la primera sentencia, cuando
+   Hibernate ya ha marcado la conexion como de solo lectura. Cada replica usa la misma
+   configuracion de Hikari (spring.datasource.hikari) que el primario. */
+@Configuration
+@ConditionalOnProperty(prefix = "catalogue.datasource.routing", name = "enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    private static final String PREFIX = "catalogue.datasource.routing";
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        List<String> replicaUrls = binder.bind(PREFIX + ".replica-urls", Bindable.listOf(String.class)).orElse(List.of());
+        String strategy = environment.getProperty(PREFIX + ".strategy", "round-robin");
+
+        HikariDataSource primary = pool("primary", properties.determineUrl(), properties, binder, meterRegistry);
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            replicas.add(pool("replica-" + (i + 1), replicaUrls.get(i), properties, binder, meterRegistry));
+        }
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(new ReplicaDataSource(primary, replicas, ReplicaDataSource.Strategy.from(strategy)));
+        return dataSource;
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(Environment environment) {
+        Duration window = environment.getProperty(PREFIX + ".read-your-writes-window", Duration.class, Duration.ofSeconds(5));
+        return new FilterRegistrationBean<>(new ReadYourWritesFilter(window));
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    private HikariDataSource pool(String name, String url, DataSourceProperties properties, Binder binder,
+                                  ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        meterRegistry.ifAvailable(registry -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+        pools.add(pool);
+        return pool;
+    }
+}
@@ -0,0 +1,116 @@
+package com.unir.products.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Origen de las conexiones de solo lectura: reparte entre las replicas por turno (round-robin) o
+   eligiendo el pool con menos conexiones ocupadas (least-loaded). Las peticiones de un cliente que
+   acaba de escribir se fijan al primario (lectura de sus propias escrituras). */
+public class ReplicaDataSource extends AbstractDataSource {
+
+    public enum Strategy {
+        ROUND_ROBIN, LEAST_LOADED;
+
+        public static Strategy from(String value) {
+            return valueOf(value.trim().replace('-', '_').toUpperCase());
+        }
+    }
+
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+    //true si la ultima conexion de lectura del hilo salio de una replica
+    private static final ThreadLocal<Boolean> READ_FROM_REPLICA = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final Strategy strategy;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaDataSource(DataSource primary, List<HikariDataSource> replicas, Strategy strategy) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.strategy = strategy;
+    }
+
+    /* Las lecturas del hilo actual van al primario hasta llamar a release() */
+    public static void pinToPrimary() {
+        PINNED_TO_PRIMARY.set(Boolean.TRUE);
+    }
+
+    public static void release() {
+        PINNED_TO_PRIMARY.remove();
+        READ_FROM_REPLICA.remove();
+    }
+
+    public static boolean isPinnedToPrimary() {
+        return Boolean.TRUE.equals(PINNED_TO_PRIMARY.get());
+    }
+
+    /* Lectura que se guardara en una cache: va al primario aunque el hilo no este fijado. Solo surte
+       efecto si la transaccion aun no tiene conexion (LazyConnectionDataSourceProxy la pide en la
+       primera sentencia); readFromReplica() dice despues de donde salio. */
+    public static <T> T onPrimary(Supplier<T> read) {
+        boolean pinned = isPinnedToPrimary();
+        PINNED_TO_PRIMARY.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            if (!pinned) {
+                PINNED_TO_PRIMARY.remove();
+            }
+        }
+    }
+
+    /* true si la conexion de lectura de la transaccion en curso es de una replica: lo leido puede
+       ser anterior a escrituras ya confirmadas y no debe guardarse en las caches */
+    public static boolean readFromReplica() {
+        return Boolean.TRUE.equals(READ_FROM_REPLICA.get());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return select().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return select().getConnection(username, password);
+    }
+
+    private DataSource select() {
+        DataSource selected = replicas.isEmpty() || isPinnedToPrimary() ? primary : selectReplica();
+        READ_FROM_REPLICA.set(selected != primary);
+        return selected;
+    }
+
+    private DataSource selectReplica() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        if (strategy == Strategy.ROUND_ROBIN) {
+            return replicas.get(start);
+        }
+        //Empezando por el turno, para repartir los empates
+        HikariDataSource selected = null;
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            HikariDataSource replica = replicas.get((start + i) % replicas.size());
+            int load = load(replica);
+            if (load < lowest) {
+                lowest = load;
+                selected = replica;
+            }
+        }
+        return selected;
+    }
+
+    private static int load(HikariDataSource replica) {
+        HikariPoolMXBean pool = replica.getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+    }
+}
@@ -1,41 +1,86 @@
 package com.unir.products.controller;
 
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import com.unir.products.controller.model.BulkBookResult;
 import com.unir.products.controller.model.ResponseCodes;
+import com.unir.products.controller.model.StockReservationItem;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.unir.products.config.ReplicaDataSource;
+import com.unir.products.controller.model.BookBatchRequest;
+import com.unir.products.controller.model.BookBatchResponse;
+import com.unir.products.controller.model.BookChangesDto;
 import com.unir.products.controller.model.BookDto;
+import com.unir.products.controller.model.BookFacetsDto;
 import com.unir.products.controller.model.BookSearchCriteria;
+import com.unir.products.controller.model.CacheStatsDto;
+import com.unir.products.data.utils.BookCursor;
+import com.unir.products.data.utils.BookSort;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import com.unir.products.data.model.Book;
+import com.unir.products.data.model.BookChange;
+import com.unir.products.data.model.BookSuggestion;
+import com.unir.products.data.model.BookSummary;
+import com.unir.products.data.model.CatalogueVersion;
 import com.unir.products.controller.model.CreateBookRequest;
 import com.unir.products.service.BooksService;
+import com.unir.products.service.utils.BookSearchUtils;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 @RestController
 @RequiredArgsConstructor
 @Slf4j
 @Tag(name = "Controlador de catalogo", description = "Microservicio encargado de exponer operaciones sobre los libros en el catalogo: crear, eliminar, modificar (total y parcialmente) y buscar libros (por varios criterios).")
 public class BooksController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String VIEW_FULL = "full";
+    private static final String VIEW_SUMMARY = "summary";
+    private static final int CHANGE_STREAM_BUFFER = 1000;
+    private static final Duration CHANGE_STREAM_HEARTBEAT = Duration.ofSeconds(15);
+
     private final BooksService service;
 
+    @Value("${catalogue.pagination.default-limit:100}")
+    private int defaultLimit;
+
+    @Value("${catalogue.pagination.max-limit:1000}")
+    private int maxLimit;
+
     /* API REST para la busqueda de libros por varios criterios:
        titulo, autor, fecha de publicación, editorial, categoria, isbn, valoración, disponible, en stock o precio.
      */
@@ -47,8 +92,12 @@ public class BooksController {
     @ApiResponse(
             responseCode = "200",
             content = @Content(mediaType = "application/json", schema = @Schema(implementation = Book.class)))
-   public ResponseEntity<List<Book>> getProducts(
+   public ResponseEntity<List<?>> getProducts(
             @RequestHeader Map<String, String> headers,
+            WebRequest webRequest,
+            @Parameter(name = "q", description = "Búsqueda libre en titulo, autor y sinopsis, sin acentos y ordenada por relevancia si no se indica sort. Con sort, se rechaza si encaja con más de catalogue.search.full-text.max-candidates libros", example = "", required = false)
+                 @RequestParam(required = false) String q,
+
             @Parameter(name = "titulo", description = "Titulo del libro (búsqueda parcial)", example = "", required = false)
                  @RequestParam(required = false) String titulo,
 
@@ -83,10 +132,23 @@ public class BooksController {
                  @RequestParam(required = false) Double precioMin,
 
             @Parameter(name = "precioMax", description = "Precio máximo del libro", example = "", required = false)
-                 @RequestParam(required = false) Double precioMax) {
+                 @RequestParam(required = false) Double precioMax,
+
+            @Parameter(name = "limit", description = "Número máximo de libros por página", example = "", required = false)
+                 @RequestParam(required = false) Integer limit,
+
+            @Parameter(name = "cursor", description = "Cursor devuelto en la cabecera X-Next-Cursor de la página anterior", example = "", required = false)
+                 @RequestParam(required = false) String cursor,
+
+            @Parameter(name = "sort", description = "Campo de ordenación (id, titulo, precio, valoracion, fecha_de_publicacion), con prefijo '-' para orden descendente", example = "", required = false)
+                 @RequestParam(required = false) String sort,
+
+            @Parameter(name = "view", description = "Vista de cada libro: 'full' (entidad completa) o 'summary' (sin sinopsis ni portada)", example = "full", required = false)
+                 @RequestParam(defaultValue = VIEW_FULL) String view) {
 
         log.info("headers: {}", headers);
         BookSearchCriteria criteria = new BookSearchCriteria();
+        criteria.setQ(q);
         criteria.setTitulo(titulo);
         criteria.setAutor(autor);
         criteria.setFechaDePublicacionDesde(fechaDePublicacionDesde);
@@ -99,15 +161,101 @@ public class BooksController {
         criteria.setConStock(conStock);
         criteria.setPrecioMin(precioMin);
         criteria.setPrecioMax(precioMax);
-        List<Book> books = service.getBooks(criteria);
+        boolean summary = VIEW_SUMMARY.equals(view);
+        if ((!summary && !VIEW_FULL.equals(view)) || (limit != null && limit <= 0)) {
+            return ResponseEntity.badRequest().build();
+        }
+        criteria.setLimit(Math.min(limit != null ? limit : defaultLimit, maxLimit));
+        criteria.setCursor(cursor);
+        criteria.setSort(sort);
+
+        //Revalidacion sin consultar la base de datos: el listado solo cambia si cambia el catalogo
+        CatalogueVersion version = service.getCatalogueVersion();
+        if (webRequest.checkNotModified(catalogueETag(version), version.lastModified())) {
+            return null;
+        }
+
+        List<?> books;
+        try {
+            books = summary ? service.getBookSummaries(criteria) : service.getBooks(criteria);
+        } catch (IllegalArgumentException | InvalidDataAccessApiUsageException e) {
+            //el cursor y el orden se validan en BookRepository: Spring traduce alli el IllegalArgumentException
+            log.warn("Parametros de paginacion no validos: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
 
         if (books != null && !books.isEmpty()) {
-            return ResponseEntity.ok(books);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (books.size() >= criteria.getLimit() && !BookSearchUtils.isRankedSearch(criteria)) {
+                //pagina completa: puede haber mas resultados a partir del ultimo libro devuelto
+                BookSort order = BookSort.parse(sort);
+                String next = (summary
+                        ? BookCursor.after(order, (BookSummary) books.getLast())
+                        : BookCursor.after(order, (Book) books.getLast())).encode();
+                response.header("X-Next-Cursor", next);
+                response.header(HttpHeaders.LINK, "<" + ServletUriComponentsBuilder.fromCurrentRequest()
+                        .replaceQueryParam("cursor", next).toUriString() + ">; rel=\"next\"");
+            }
+            return response.body(books);
         } else {
             return ResponseEntity.notFound().build();
         }
     }
 
+    /* Recuentos por categoria, editorial (las catalogue.facets.max-editoriales mas frecuentes), tramo de
+       precio, tramo de valoracion y stock para los mismos criterios de busqueda que GET /books, calculados
+       en la base de datos */
+    @GetMapping("/books/facets")
+    @Operation(
+            operationId = "Obtener facets de la busqueda",
+            description = "Operacion de lectura",
+            summary = "Se devuelve el numero de libros por cada valor de los filtros, acorde a los criterios seleccionados.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookFacetsDto.class)))
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "La búsqueda libre encaja con demasiados libros para contarlos sin el índice de filtros.")
+    public ResponseEntity<BookFacetsDto> getFacets(@ParameterObject BookSearchCriteria criteria, WebRequest webRequest) {
+
+        CatalogueVersion version = service.getCatalogueVersion();
+        if (webRequest.checkNotModified(catalogueETag(version), version.lastModified())) {
+            return null;
+        }
+        try {
+            return ResponseEntity.ok(service.getFacets(criteria));
+        } catch (IllegalArgumentException | InvalidDataAccessApiUsageException e) {
+            log.warn("Busqueda de facets no valida: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /* Autocompletado de titulos y autores a partir de un prefijo, resuelto en memoria */
+    @GetMapping("/books/suggest")
+    @Operation(
+            operationId = "Sugerencias de busqueda",
+            description = "Operacion de lectura",
+            summary = "Se devuelven los titulos y autores mejor valorados que contienen una palabra que empieza por el prefijo.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookSuggestion.class)))
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "Prefijo vacío o límite no válido.")
+    public ResponseEntity<List<BookSuggestion>> suggest(
+            @Parameter(name = "prefix", description = "Texto tecleado hasta el momento (sin distinguir mayúsculas ni acentos)", example = "alas", required = true)
+                 @RequestParam String prefix,
+            @Parameter(name = "limit", description = "Número máximo de sugerencias", example = "10", required = false)
+                 @RequestParam(defaultValue = "10") int limit) {
+
+        if (prefix.isBlank() || limit <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(service.getSuggestions(prefix, limit));
+    }
+
     /* API REST para la busqueda de un libro por su ID  */
     @GetMapping("/books/{bookId}")
     @Operation(
@@ -127,13 +275,150 @@ public class BooksController {
         Book book = service.getBook(bookId);
 
         if (book != null) {
-            return ResponseEntity.ok(book);
+            //Con ETag, Spring responde 304 por si solo cuando coincide con If-None-Match
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noCache())
+                    .eTag(eTag(book))
+                    .body(book);
         } else {
             return ResponseEntity.notFound().build();
         }
 
     }
 
+    /* Exportacion completa del catalogo en streaming, un libro JSON por linea */
+    @GetMapping(value = "/books/export", produces = NDJSON)
+    @Operation(
+            operationId = "Exportar el catalogo completo",
+            description = "Operacion de lectura",
+            summary = "Se devuelve todo el catalogo en formato NDJSON, escrito en streaming.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = NDJSON, schema = @Schema(implementation = Book.class)))
+    public ResponseEntity<StreamingResponseBody> exportBooks() {
+
+        log.info("Recibida petición de exportación del catálogo");
+        StreamingResponseBody body = service::exportBooks;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    /* Registro de cambios: altas, modificaciones y bajas confirmadas posteriores a una secuencia */
+    @GetMapping("/books/changes")
+    @Operation(
+            operationId = "Obtener cambios del catalogo",
+            description = "Operacion de lectura",
+            summary = "Se devuelven los cambios posteriores a la secuencia indicada, para sincronizar copias del catálogo de forma incremental.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookChangesDto.class)))
+    @ApiResponse(
+            responseCode = "410",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "La secuencia ya no está disponible o es de otro arranque: hay que recargar el catálogo completo.")
+    public ResponseEntity<BookChangesDto> getChanges(
+            @Parameter(name = "since", description = "Última secuencia recibida; sin ella se devuelve la posición actual", example = "", required = false)
+                 @RequestParam(required = false) Long since,
+            @Parameter(name = "boot", description = "bootId de la respuesta anterior", example = "", required = false)
+                 @RequestParam(required = false) String boot,
+            @Parameter(name = "limit", description = "Número máximo de cambios", example = "", required = false)
+                 @RequestParam(required = false) Integer limit) {
+
+        if (limit != null && limit <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        BookChangesDto changes = service.getChanges(boot, since, Math.min(limit != null ? limit : maxLimit, maxLimit));
+        if (changes != null) {
+            return ResponseEntity.ok(changes);
+        } else {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+    }
+
+    /* Los mismos cambios en directo (Server-Sent Events). El id de cada evento es "bootId:secuencia",
+       de modo que el navegador reanuda la suscripcion con Last-Event-ID tras una desconexion */
+    @GetMapping(value = "/books/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            operationId = "Suscribirse a los cambios del catalogo",
+            description = "Operacion de lectura",
+            summary = "Se envían los cambios posteriores a la secuencia indicada y después cada nuevo cambio, como eventos SSE.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE, schema = @Schema(implementation = BookChange.class)))
+    @ApiResponse(
+            responseCode = "410",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "La secuencia ya no está disponible o es de otro arranque: hay que recargar el catálogo completo.")
+    public ResponseEntity<SseEmitter> streamChanges(
+            @Parameter(name = "since", description = "Última secuencia recibida; sin ella solo se envían los cambios nuevos", example = "", required = false)
+                 @RequestParam(required = false) Long since,
+            @Parameter(name = "boot", description = "bootId de la última respuesta", example = "", required = false)
+                 @RequestParam(required = false) String boot,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+
+        if (lastEventId != null && lastEventId.contains(":")) {
+            try {
+                boot = lastEventId.substring(0, lastEventId.indexOf(':'));
+                since = Long.valueOf(lastEventId.substring(lastEventId.indexOf(':') + 1));
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
+        //Se comprueba la secuencia antes de abrir el flujo: si ya no esta disponible, 410 y no un flujo vacio
+        BookChangesDto first = service.getChanges(boot, since, CHANGE_STREAM_BUFFER);
+        if (first == null) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+
+        //Cada suscriptor tiene su hilo virtual de envio. El historial se envia por paginas hasta ponerse al dia
+        //y despues se pasa a directo; si el cliente no da abasto en directo, se vuelve a paginar desde el
+        //ultimo cambio enviado. Un cliente lento no frena las escrituras.
+        SseEmitter emitter = new SseEmitter();
+        String bootId = first.getBootId();
+        Thread sender = Thread.ofVirtual().name("changes-stream").start(() -> {
+            try {
+                BookChangesDto page = first;
+                while (page != null) {
+                    for (BookChange change : page.getChanges()) {
+                        sendChange(emitter, bootId, change);
+                    }
+                    long last = page.getLastSequence();
+                    if (!page.getHasMore()) {
+                        Long sent = streamLive(emitter, bootId, last);
+                        if (sent == null) break;
+                        last = sent;
+                    }
+                    page = service.getChanges(bootId, last, CHANGE_STREAM_BUFFER);
+                }
+                //la secuencia ha salido del registro: al reanudar con Last-Event-ID el cliente recibe 410
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Suscripcion a cambios cerrada: {}", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        emitter.onCompletion(sender::interrupt);
+        emitter.onTimeout(sender::interrupt);
+        emitter.onError(error -> sender.interrupt());
+        return ResponseEntity.ok(emitter);
+    }
+
+    /* Estadisticas de la cache de libros por ID, para poder dimensionarla */
+    @GetMapping("/books/cache/stats")
+    @Operation(
+            operationId = "Estadisticas de la cache de libros",
+            description = "Operacion de lectura",
+            summary = "Se devuelven los aciertos, fallos y expulsiones de la cache de libros por ID.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = CacheStatsDto.class)))
+    public ResponseEntity<CacheStatsDto> getCacheStats() {
+        return ResponseEntity.ok(service.getCacheStats());
+    }
+
     /* Creamos un nuevo libro: insertar un libro en la base de datos */
     @PostMapping("/books")
     @Operation(
@@ -177,6 +462,117 @@ public class BooksController {
 
     }
 
+    /* Alta masiva de libros: array JSON o NDJSON, con resultado individual por libro */
+    @PostMapping(value = "/books/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    @Operation(
+            operationId = "Insertar libros de forma masiva",
+            description = "Operacion de escritura",
+            summary = "Creamos (o actualizamos, con upsert=true) una lista de libros a partir de sus datos",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Array JSON o flujo NDJSON de libros a crear.",
+                    required = true,
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CreateBookRequest.class))))
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkBookResult.class)),
+            description = "Resultado de cada libro: OK, DUPLICATE (ISBN ya existente) o BAD_REQUEST (con el motivo en error si lo ha rechazado la base de datos).")
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkBookResult.class)),
+            description = "JSON mal formado: resultados de los libros leídos hasta el error y, en último lugar, la posición del error con código MALFORMED. Los libros anteriores con código OK se han guardado.")
+    public ResponseEntity<List<BulkBookResult>> addBooks(
+            @Parameter(name = "upsert", description = "Si es true, los ISBN existentes se actualizan en lugar de marcarse como duplicados", example = "false", required = false)
+                 @RequestParam(defaultValue = "false") boolean upsert,
+            InputStream body) {
+
+        try {
+            List<BulkBookResult> results = service.createBooks(body, upsert);
+            if (!results.isEmpty() && results.getLast().getCode() == ResponseCodes.MALFORMED) {
+                return ResponseEntity.badRequest().body(results);
+            }
+            return ResponseEntity.ok(results);
+        } catch (IOException e) {
+            log.warn("Carga masiva rechazada: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /* Consulta de varios libros por id o ISBN en una sola peticion */
+    @PostMapping("/books/batch")
+    @Operation(
+            operationId = "Obtener varios libros",
+            description = "Operacion de lectura",
+            summary = "Se devuelven los libros encontrados por id, indicando expresamente los ids e ISBN que no existen.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Listas de ids y/o ISBN a consultar.",
+                    required = true,
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookBatchRequest.class))))
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookBatchResponse.class)))
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "Petición vacía o con demasiados elementos.")
+    public ResponseEntity<BookBatchResponse> getBooksBatch(@RequestBody BookBatchRequest request) {
+
+        if ((request.getIds() == null || request.getIds().isEmpty()) && (request.getIsbns() == null || request.getIsbns().isEmpty())) {
+            return ResponseEntity.badRequest().build();
+        }
+        //Lecturas para aplicar el registro de cambios: al primario aunque haya replicas de lectura
+        boolean primary = Boolean.TRUE.equals(request.getPrimary());
+        if (primary) {
+            ReplicaDataSource.pinToPrimary();
+        }
+        try {
+            return ResponseEntity.ok(service.getBooks(request));
+        } catch (IllegalArgumentException e) {
+            log.warn("Consulta por lotes rechazada: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } finally {
+            if (primary) {
+                ReplicaDataSource.release();
+            }
+        }
+    }
+
+    /* Reservamos stock de uno o varios libros en una sola transaccion (todo o nada) */
+    @PostMapping("/books/stock/reservations")
+    @Operation(
+            operationId = "Reservar stock",
+            description = "Operacion de escritura",
+            summary = "Se descuenta el stock de cada libro de forma atómica; si alguno no tiene stock suficiente no se reserva nada.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Lista de pares (bookId, cantidad).",
+                    required = true,
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = StockReservationItem.class))))
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = StockReservationItem.class)),
+            description = "Stock reservado para todas las líneas.")
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "Datos incorrectos introducidos.")
+    @ApiResponse(
+            responseCode = "409",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = StockReservationItem.class)),
+            description = "Líneas sin stock suficiente o de libros inexistentes. No se ha reservado nada.")
+    public ResponseEntity<List<StockReservationItem>> reserveStock(@RequestBody List<StockReservationItem> items) {
+
+        if (items == null || items.isEmpty() || items.stream().anyMatch(item -> item.getBookId() == null
+                || item.getCantidad() == null || item.getCantidad() <= 0)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<StockReservationItem> rejected = service.reserveStock(items);
+        if (rejected.isEmpty()) {
+            return ResponseEntity.ok(items);
+        } else {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(rejected);
+        }
+    }
+
     /* Borramos un libro a partir de su identificador */
     @DeleteMapping("/books/{bookId}")
     @Operation(
@@ -219,11 +615,22 @@ public class BooksController {
             responseCode = "400",
             content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
             description = "libro no válido o datos incorrectos introducidos.")
-    public ResponseEntity<Book> patchBook(@PathVariable String bookId, @RequestBody String patchBody) {
-
-        Book patched = service.updateBook(bookId, patchBody);
+    @ApiResponse(
+            responseCode = "412",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "El libro ha cambiado desde la versión indicada en If-Match.")
+    public ResponseEntity<Book> patchBook(@PathVariable String bookId,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                          @RequestBody String patchBody) {
+
+        Book patched;
+        try {
+            patched = service.updateBook(bookId, patchBody, expectedVersion(bookId, ifMatch));
+        } catch (OptimisticLockingFailureException e) {
+            return conflict(ifMatch);
+        }
         if (patched != null) {
-            return ResponseEntity.ok(patched);
+            return ResponseEntity.ok().eTag(eTag(patched)).body(patched);
         } else {
             return ResponseEntity.badRequest().build();
         }
@@ -246,14 +653,97 @@ public class BooksController {
             responseCode = "404",
             content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
             description = "Libro a modificar no encontrado.")
-    public ResponseEntity<Book> updateBook(@PathVariable String bookId, @RequestBody BookDto body) {
-
-        Book updated = service.updateBook(bookId, body);
+    @ApiResponse(
+            responseCode = "412",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "El libro ha cambiado desde la versión indicada en If-Match.")
+    public ResponseEntity<Book> updateBook(@PathVariable String bookId,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                           @RequestBody BookDto body) {
+
+        Book updated;
+        try {
+            updated = service.updateBook(bookId, body, expectedVersion(bookId, ifMatch));
+        } catch (OptimisticLockingFailureException e) {
+            return conflict(ifMatch);
+        }
         if (updated != null) {
-            return ResponseEntity.ok(updated);
+            return ResponseEntity.ok().eTag(eTag(updated)).body(updated);
         } else {
             return ResponseEntity.notFound().build();
         }
     }
 
+    /* Envia en directo los cambios posteriores a 'from' hasta que la cola del suscriptor se desborda.
+       Devuelve la ultima secuencia enviada, o null si 'from' ya no esta en el registro. */
+    private Long streamLive(SseEmitter emitter, String bootId, long from) throws IOException, InterruptedException {
+        BlockingQueue<BookChange> queue = new ArrayBlockingQueue<>(CHANGE_STREAM_BUFFER);
+        AtomicBoolean overflow = new AtomicBoolean();
+        Runnable unsubscribe = service.subscribeChanges(bootId, from, change -> {
+            if (!queue.offer(change)) {
+                overflow.set(true);
+            }
+        });
+        if (unsubscribe == null) {
+            return null;
+        }
+        try {
+            long last = from;
+            while (!overflow.get()) {
+                BookChange change = queue.poll(CHANGE_STREAM_HEARTBEAT.toMillis(), TimeUnit.MILLISECONDS);
+                if (change == null) {
+                    emitter.send(SseEmitter.event().comment("keepalive"));
+                } else {
+                    sendChange(emitter, bootId, change);
+                    last = change.sequence();
+                }
+            }
+            return last;
+        } finally {
+            unsubscribe.run();
+        }
+    }
+
+    private static void sendChange(SseEmitter emitter, String bootId, BookChange change) throws IOException {
+        emitter.send(SseEmitter.event()
+                .id(bootId + ":" + change.sequence())
+                .name("change")
+                .data(change, MediaType.APPLICATION_JSON));
+    }
+
+    /* ETag fuerte de un libro: id y version de la fila */
+    private static String eTag(Book book) {
+        return "\"" + book.getId() + "-" + book.getVersion() + "\"";
+    }
+
+    /* ETag debil de los listados: arranque y contador de escrituras del catalogo */
+    private static String catalogueETag(CatalogueVersion version) {
+        return "W/\"" + version.bootId() + "-" + version.epoch() + "\"";
+    }
+
+    /* Version esperada segun If-Match: null si no se envia o es '*'. Una etiqueta que no
+       corresponde a este libro (o debil, que If-Match no admite) nunca coincide */
+    private static Long expectedVersion(String bookId, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String prefix = "\"" + bookId + "-";
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+                try {
+                    return Long.valueOf(tag.substring(prefix.length(), tag.length() - 1));
+                } catch (NumberFormatException e) {
+                    log.warn("If-Match no valido: {}", ifMatch);
+                }
+            }
+        }
+        return -1L;
+    }
+
+    /* 412 si el cliente envio If-Match; si no, la escritura concurrente se notifica como conflicto */
+    private static ResponseEntity<Book> conflict(String ifMatch) {
+        return ResponseEntity.status(ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).build();
+    }
+
 }
@@ -0,0 +1,21 @@
+package com.unir.products.controller.model;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+public class BookBatchRequest {
+
+	private List<Long> ids;
+
+	private List<String> isbns;
+
+	//true al aplicar el registro de cambios: se lee del primario y sin cache, nunca una version anterior al cambio
+	private Boolean primary;
+}
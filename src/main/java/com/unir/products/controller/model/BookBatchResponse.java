@@ -0,0 +1,26 @@
+package com.unir.products.controller.model;
+
+import com.unir.products.data.model.Book;
+import lombok.*;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+public class BookBatchResponse {
+
+	//libros encontrados, por id y en el orden de la peticion
+	private Map<Long, Book> books;
+
+	//id de cada ISBN encontrado (el libro esta en books)
+	private Map<String, Long> isbns;
+
+	private List<Long> missingIds;
+
+	private List<String> missingIsbns;
+}
@@ -0,0 +1,25 @@
+package com.unir.products.controller.model;
+
+import com.unir.products.data.model.BookChange;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+public class BookChangesDto {
+
+	//identificador del arranque: las secuencias vuelven a empezar tras un reinicio
+	private String bootId;
+
+	//secuencia desde la que pedir la siguiente pagina
+	private Long lastSequence;
+
+	private Boolean hasMore;
+
+	private List<BookChange> changes;
+}
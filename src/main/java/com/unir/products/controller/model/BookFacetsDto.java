@@ -0,0 +1,26 @@
+package com.unir.products.controller.model;
+
+import lombok.*;
+
+import java.util.Map;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+public class BookFacetsDto {
+
+	private Long total;
+
+	private Map<String, Long> categorias;
+
+	private Map<String, Long> editoriales;
+
+	private Map<String, Long> precios;
+
+	private Map<String, Long> valoraciones;
+
+	private Long conStock;
+}
@@ -1,9 +1,12 @@
 package com.unir.products.controller.model;
 
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
 import java.time.LocalDate;
 
 
@@ -11,10 +14,15 @@ import java.time.LocalDate;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
+@Builder(toBuilder = true)
 public class BookSearchCriteria {
+    //busqueda libre por relevancia sobre titulo, autor y sinopsis
+    private String q;
     private String titulo;
     private String autor;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
     private LocalDate fechaDePublicacionDesde;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
     private LocalDate fechaDePublicacionHasta;
     private String editorial;
     private String categoria;
@@ -24,4 +32,8 @@ public class BookSearchCriteria {
     private Boolean conStock;
     private Double precioMin;
     private Double precioMax;
+    //paginacion por cursor (keyset) y ordenacion
+    private Integer limit;
+    private String cursor;
+    private String sort;
 }
\ No newline at end of file
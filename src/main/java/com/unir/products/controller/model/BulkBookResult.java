@@ -0,0 +1,24 @@
+package com.unir.products.controller.model;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+public class BulkBookResult {
+
+	//posicion del libro en la peticion
+	private Integer index;
+
+	private String isbn;
+
+	private ResponseCodes code;
+
+	private Long id;
+
+	//motivo del rechazo de un libro no valido que la base de datos no ha aceptado
+	private String error;
+}
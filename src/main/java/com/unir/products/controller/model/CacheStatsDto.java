@@ -0,0 +1,22 @@
+package com.unir.products.controller.model;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+public class CacheStatsDto {
+
+	private Long size;
+
+	private Long hits;
+
+	private Long misses;
+
+	private Double hitRate;
+
+	private Long evictions;
+}
@@ -4,6 +4,8 @@ public enum ResponseCodes {
 	
 	OK,
 	BAD_REQUEST,
-	DUPLICATE
+	DUPLICATE,
+	//carga masiva: JSON ilegible a partir de esta posicion, no se procesa nada mas
+	MALFORMED
 
 }
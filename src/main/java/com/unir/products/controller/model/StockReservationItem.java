@@ -0,0 +1,17 @@
+package com.unir.products.controller.model;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+public class StockReservationItem {
+
+	private Long bookId;
+
+	//unidades a descontar del stock
+	private Integer cantidad;
+}
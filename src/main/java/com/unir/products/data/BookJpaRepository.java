@@ -1,12 +1,20 @@
 package com.unir.products.data;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import com.unir.products.data.model.Book;
-import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import com.unir.products.data.model.BookStock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-interface BookJpaRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book> {
+interface BookJpaRepository extends JpaRepository<Book, Long> {
 
 	List<Book> findByTitulo(String titulo);
 
@@ -20,4 +28,24 @@ interface BookJpaRepository extends JpaRepository<Book, Long>, JpaSpecificationE
 	
 	Book findByIsbn(String isbn);
 
+	List<Book> findByIsbnIn(Collection<String> isbns);
+
+	//Descuento atomico: la condicion sobre el stock evita vender por debajo de cero sin bloquear en la aplicacion
+	@Modifying(flushAutomatically = true)
+	@Query("update versioned Book b set b.stock = b.stock - :cantidad where b.id = :id and b.stock >= :cantidad")
+	int reserveStock(@Param("id") Long id, @Param("cantidad") int cantidad);
+
+	//Stock y version tras una reserva, sin cargar la entidad (el UPDATE masivo no refresca el contexto de persistencia)
+	@Query("select new com.unir.products.data.model.BookStock(b.stock, b.version) from Book b where b.id = :id")
+	BookStock findStockById(@Param("id") Long id);
+
+	//Cursor de solo avance para exportaciones: sin snapshots de dirty-checking y leyendo por bloques
+	@Query("select b from Book b order by b.id")
+	@QueryHints({
+			@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+			@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+			@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+	})
+	Stream<Book> streamAll();
+
 }
@@ -5,24 +5,133 @@ import com.unir.products.data.utils.Consts;
 import com.unir.products.data.utils.SearchCriteria;
 import com.unir.products.data.utils.SearchOperation;
 import com.unir.products.data.utils.SearchStatement;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.unir.products.config.ReplicaDataSource;
+import com.unir.products.data.cache.BookCache;
+import com.unir.products.data.cache.BookJsonCache;
+import com.unir.products.data.feed.BookChangeFeed;
 import com.unir.products.data.model.Book;
+import com.unir.products.data.model.BookChange;
+import com.unir.products.data.model.BookStock;
+import com.unir.products.data.model.BookSuggestion;
+import com.unir.products.data.model.BookSummary;
+import com.unir.products.data.model.CatalogueVersion;
+import com.unir.products.data.model.FacetRow;
+import com.unir.products.data.search.BookFilterIndex;
+import com.unir.products.data.search.BookFullTextIndex;
+import com.unir.products.data.search.BookIndex;
+import com.unir.products.data.search.BookSuggestIndex;
+import com.unir.products.data.search.BookTextIndex;
+import com.unir.products.data.utils.BookAttribute;
+import com.unir.products.data.utils.BookCursor;
+import com.unir.products.data.utils.BookSort;
+import com.unir.products.data.utils.FacetBands;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import org.roaringbitmap.RoaringBitmap;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.unir.products.service.utils.BookSearchUtils.isRankedSearch;
 
 @Repository
 @RequiredArgsConstructor
+@Slf4j
 public class BookRepository {
 
+    private static final String ALIAS = "b";
+    //Expresion agrupada de cada facet: el valor de la columna o el indice de su tramo
+    private static final Map<String, String> FACETS = new LinkedHashMap<>();
+
+    static {
+        FACETS.put(Consts.CATEGORIA, ALIAS + "." + BookAttribute.CATEGORIA.getProperty());
+        FACETS.put(Consts.EDITORIAL, ALIAS + "." + BookAttribute.EDITORIAL.getProperty());
+        FACETS.put(Consts.PRECIO, FacetBands.PRECIO.toJpql(ALIAS + "." + BookAttribute.PRECIO.getProperty()));
+        FACETS.put(Consts.VALORACION, FacetBands.VALORACION.toJpql(ALIAS + "." + BookAttribute.VALORACION.getProperty()));
+    }
+
+    private static final String SUMMARY_SELECTION = "new " + BookSummary.class.getName() + "("
+            + Stream.of(BookAttribute.ID, BookAttribute.TITULO, BookAttribute.AUTOR, BookAttribute.FECHA_DE_PUBLICACION,
+                    BookAttribute.EDITORIAL, BookAttribute.CATEGORIA, BookAttribute.ISBN, BookAttribute.VALORACION,
+                    BookAttribute.VISIBLE, BookAttribute.STOCK, BookAttribute.PRECIO)
+            .map(attribute -> ALIAS + "." + attribute.getProperty())
+            .collect(Collectors.joining(", ")) + ")";
+
     private final BookJpaRepository repository;
+    private final BookTextIndex textIndex;
+    private final BookFilterIndex filterIndex;
+    private final BookFullTextIndex fullTextIndex;
+    private final BookSuggestIndex suggestIndex;
+    private final List<BookIndex> indexes;
+    private final BookCache cache;
+    private final BookJsonCache jsonCache;
+    private final CatalogueEpoch epoch;
+    private final BookChangeFeed changeFeed;
+    private final EntityManager entityManager;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, String> queryPlans = new ConcurrentHashMap<>();
+    //Actualizaciones de indices confirmadas durante una reconstruccion: se repiten al terminarla
+    private final Lock rebuildLock = new ReentrantLock();
+    private List<Consumer<BookIndex>> pendingUpdates;
 
     public List<Book> getBooks() {
         return repository.findAll();
     }
 
+    /* Con replicas de lectura, la cache solo se llena desde el primario: una replica retrasada dejaria
+       en ella una version anterior a escrituras ya confirmadas. Las peticiones fijadas al primario
+       (lectura de sus propias escrituras) no pasan por la cache. */
     public Book getById(Long id) {
+        if (ReplicaDataSource.isPinnedToPrimary()) {
+            return repository.findById(id).orElse(null);
+        }
+        return cache.get(id, key -> ReplicaDataSource.onPrimary(() -> repository.findById(key).orElse(null)),
+                ReplicaDataSource::readFromReplica);
+    }
+
+    /* Varios libros por id: primero la cache y los que faltan en una sola consulta IN */
+    public Map<Long, Book> getByIds(Collection<Long> ids) {
+        if (ReplicaDataSource.isPinnedToPrimary()) {
+            return getByIdsUncached(ids);
+        }
+        return cache.getAll(ids, missing -> ReplicaDataSource.onPrimary(() -> getByIdsUncached(missing)),
+                ReplicaDataSource::readFromReplica);
+    }
+
+    private Map<Long, Book> getByIdsUncached(Collection<? extends Long> ids) {
+        return repository.findAllById(List.copyOf(ids)).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+    }
+
+    /* Lectura sin cache para las escrituras: se trabaja sobre la entidad gestionada y no sobre la copia compartida */
+    public Book getByIdForUpdate(Long id) {
         return repository.findById(id).orElse(null);
     }
     
@@ -30,22 +139,347 @@ public class BookRepository {
         return repository.findByIsbn(isbn);
     }
 
+    public List<Book> getByIsbns(Collection<String> isbns) {
+        return repository.findByIsbnIn(isbns);
+    }
+
     public Book save(Book book) {
-        return repository.save(book);
+        Book saved = repository.save(book);
+        cache.invalidate(saved.getId());
+        afterCommit(() -> {
+            cache.invalidate(saved.getId());
+            jsonCache.invalidate(saved.getId());
+            changeFeed.append(BookChange.Type.UPSERT, saved.getId(), saved.getVersion());
+            epoch.bump();
+            updateIndexes(index -> index.index(saved));
+        });
+        return saved;
+    }
+
+    /* Guardado por lotes: los INSERT/UPDATE se agrupan segun hibernate.jdbc.batch_size */
+    public List<Book> saveAll(Collection<Book> books) {
+        List<Book> saved = repository.saveAll(books);
+        repository.flush();
+        saved.forEach(book -> cache.invalidate(book.getId()));
+        afterCommit(() -> {
+            saved.forEach(book -> {
+                cache.invalidate(book.getId());
+                jsonCache.invalidate(book.getId());
+                changeFeed.append(BookChange.Type.UPSERT, book.getId(), book.getVersion());
+            });
+            epoch.bump();
+            updateIndexes(index -> saved.forEach(index::index));
+        });
+        return saved;
+    }
+
+    /* Libera el contexto de persistencia entre bloques de una carga masiva */
+    public void clear() {
+        entityManager.clear();
     }
 
     public void delete(Book book) {
         repository.delete(book);
+        cache.invalidate(book.getId());
+        afterCommit(() -> {
+            cache.invalidate(book.getId());
+            jsonCache.invalidate(book.getId());
+            changeFeed.append(BookChange.Type.DELETE, book.getId(), null);
+            epoch.bump();
+            updateIndexes(index -> index.remove(book.getId()));
+        });
+    }
+
+    /* Devuelve false si el libro no existe o no tiene stock suficiente */
+    public boolean reserveStock(Long id, int cantidad) {
+        boolean reserved = repository.reserveStock(id, cantidad) == 1;
+        if (reserved) {
+            cache.invalidate(id);
+            BookStock stock = repository.findStockById(id);
+            afterCommit(() -> {
+                cache.invalidate(id);
+                jsonCache.invalidate(id);
+                changeFeed.append(BookChange.Type.UPSERT, id, stock.version());
+                epoch.bump();
+                updateIndexes(index -> index.stockChanged(id, stock.stock()));
+            });
+        }
+        return reserved;
+    }
+
+    public CatalogueVersion catalogueVersion() {
+        return epoch.current();
+    }
+
+    public List<BookChange> changesSince(long since, int limit) {
+        return changeFeed.since(since, limit);
+    }
+
+    public long lastChange() {
+        return changeFeed.head();
+    }
+
+    public Runnable subscribeChanges(long since, Consumer<BookChange> listener) {
+        return changeFeed.subscribe(since, listener);
+    }
+
+    public CacheStats cacheStats() {
+        return cache.stats();
+    }
+
+    public long cacheSize() {
+        return cache.size();
+    }
+
+    /* Recorre todo el catalogo sin acumularlo en el contexto de persistencia. Requiere una transaccion activa. */
+    public void forEachBook(Consumer<Book> consumer) {
+        try (Stream<Book> books = repository.streamAll()) {
+            books.forEach(book -> {
+                consumer.accept(book);
+                entityManager.detach(book);
+            });
+        }
+    }
+
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        return suggestIndex.suggest(prefix, limit);
+    }
+
+    /* Una escritura confirmada entre la lectura del catalogo y el final de la reconstruccion se perderia
+       al reemplazar los indices: sus actualizaciones se guardan y se repiten en orden al terminar. Son
+       idempotentes (alta o reemplazo, baja, stock), asi que da igual si la lectura ya las incluia. */
+    public void rebuildIndexes() {
+        rebuildLock.lock();
+        try {
+            if (pendingUpdates != null) {
+                return; //otra reconstruccion en curso
+            }
+            pendingUpdates = new ArrayList<>();
+        } finally {
+            rebuildLock.unlock();
+        }
+        try {
+            //del primario: despues los indices se actualizan con sus escrituras confirmadas
+            List<Book> books = ReplicaDataSource.onPrimary(repository::findAll);
+            indexes.forEach(index -> index.rebuild(books));
+        } finally {
+            rebuildLock.lock();
+            try {
+                log.info("Reconstruccion de indices terminada: se repiten {} actualizaciones", pendingUpdates.size());
+                pendingUpdates.forEach(this::applyToIndexes);
+                pendingUpdates = null;
+            } finally {
+                rebuildLock.unlock();
+            }
+            epoch.bump();
+        }
     }
 
     public List<Book> search(BookSearchCriteria criteria) {
+        return search(criteria, Book.class, ALIAS, Book::getId);
+    }
+
+    public List<BookSummary> searchSummaries(BookSearchCriteria criteria) {
+        return search(criteria, BookSummary.class, SUMMARY_SELECTION, BookSummary::getId);
+    }
+
+    private <T> List<T> search(BookSearchCriteria criteria, Class<T> resultType, String selection, Function<T, Long> idOf) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean rankedSearch = isRankedSearch(criteria);
+        //los hits de q llegan a SQL como lista IN: nunca mas de max-candidates
+        int maxCandidates = fullTextIndex.getMaxCandidates();
+        int hits = Math.min(fullTextIndex.getMaxHits(), maxCandidates);
+        SearchCriteria<Book> spec;
+        List<T> results;
+        while (true) {
+            //Por relevancia basta con los hits mejor puntuados; ordenada por otro campo hacen falta todos
+            List<Long> ranked = rank(criteria, rankedSearch ? hits : maxCandidates + 1);
+            if (!rankedSearch && ranked != null && ranked.size() > maxCandidates) {
+                throw new IllegalArgumentException("La busqueda libre encaja con mas de " + maxCandidates
+                        + " libros y no se puede ordenar por " + criteria.getSort() + "; ordene por relevancia o anada filtros");
+            }
+            spec = toSearchCriteria(criteria, ranked);
+            if (spec == null) {
+                results = List.of();
+            } else if (rankedSearch) {
+                results = searchRanked(criteria, resultType, selection, spec, ranked, idOf);
+            } else {
+                results = searchSorted(criteria, resultType, selection, spec);
+            }
+            //Si los filtros dejan la pagina incompleta y el indice tenia mas hits, se repite con mas,
+            //hasta max-candidates: a partir de ahi la pagina se queda con los resultados que haya
+            boolean truncated = ranked != null && ranked.size() >= hits;
+            boolean filled = criteria.getLimit() != null && results.size() >= criteria.getLimit();
+            if (!rankedSearch || !truncated || filled || hits >= maxCandidates) {
+                break;
+            }
+            hits = (int) Math.min((long) hits * 4, maxCandidates);
+        }
+
+        //Metricas por forma de busqueda: campos y operaciones usados (tras resolver los indices), vista y modo
+        List<Tag> tags = List.of(
+                Tag.of("shape", spec == null ? "empty" : spec.isEmpty() ? "none" : spec.shape()),
+                Tag.of("view", resultType.getSimpleName()),
+                Tag.of("ranked", Boolean.toString(rankedSearch)));
+        sample.stop(Timer.builder("catalogue.search")
+                .description("Duracion de BookRepository.search por forma de busqueda")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        DistributionSummary.builder("catalogue.search.rows")
+                .description("Libros devueltos por BookRepository.search por forma de busqueda")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(results.size());
+        return results;
+    }
+
+    private <T> List<T> searchSorted(BookSearchCriteria criteria, Class<T> resultType, String selection, SearchCriteria<Book> spec) {
+        BookSort sort = BookSort.parse(criteria.getSort());
+        BookCursor cursor = StringUtils.isNotBlank(criteria.getCursor())
+                ? BookCursor.decode(criteria.getCursor(), sort)
+                : null;
+
+        //Una consulta JPQL por forma de busqueda: Hibernate reutiliza su traduccion y la base de datos el plan
+        String shape = resultType.getSimpleName() + "|" + spec.shape() + "|" + sort + "|" + (cursor != null ? cursor.shape() : "");
+        String jpql = queryPlans.computeIfAbsent(shape, key -> compile(selection, spec, sort, cursor));
+
+        TypedQuery<T> query = entityManager.createQuery(jpql, resultType);
+        spec.bind(query);
+        if (cursor != null) {
+            cursor.bind(query);
+        }
+        //los listados solo se serializan: sin snapshots para dirty-checking
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+        if (criteria.getLimit() != null) {
+            query.setMaxResults(criteria.getLimit());
+        }
+        return query.getResultList();
+    }
+
+    /* Los ids candidatos (los hits mas relevantes) se filtran en la base de datos con el resto de
+       criterios y se devuelven en el orden de puntuacion BM25 del indice */
+    private <T> List<T> searchRanked(BookSearchCriteria criteria, Class<T> resultType, String selection,
+                                     SearchCriteria<Book> spec, List<Long> ranked, Function<T, Long> idOf) {
+        if (StringUtils.isNotBlank(criteria.getCursor())) {
+            throw new IllegalArgumentException("La busqueda por relevancia no admite cursor; indique un orden (sort)");
+        }
+        String jpql = queryPlans.computeIfAbsent(resultType.getSimpleName() + "|" + spec.shape() + "|ranked",
+                key -> "select " + selection + " from Book " + ALIAS + " where " + spec.toJpql(ALIAS));
+        TypedQuery<T> query = entityManager.createQuery(jpql, resultType);
+        spec.bind(query);
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int i = 0; i < ranked.size(); i++) {
+            positions.putIfAbsent(ranked.get(i), i);
+        }
+        Stream<T> results = query.getResultList().stream()
+                .sorted(Comparator.comparingInt(result -> positions.getOrDefault(idOf.apply(result), Integer.MAX_VALUE)));
+        if (criteria.getLimit() != null) {
+            results = results.limit(criteria.getLimit());
+        }
+        return results.toList();
+    }
+
+    private List<Long> rank(BookSearchCriteria criteria, int hits) {
+        return StringUtils.isNotBlank(criteria.getQ()) ? fullTextIndex.search(criteria.getQ(), hits) : null;
+    }
+
+    /* Recuento de facets con los mismos filtros que la busqueda (sin paginacion ni orden). Una consulta
+       agrupada por facet: cada una devuelve tantas filas como valores distintos tiene ese facet, en lugar
+       del producto cartesiano de todos ellos que daria un unico GROUP BY. Las editoriales pueden ser
+       miles: solo se devuelven las maxEditoriales mas frecuentes (mas una, por si una es el grupo null) */
+    public List<FacetRow> facets(BookSearchCriteria criteria, int maxEditoriales) {
+        //los recuentos cubren todos los libros que encajan con q, no solo los mas relevantes
+        int maxCandidates = fullTextIndex.getMaxCandidates();
+        List<Long> ranked = rank(criteria, maxCandidates + 1);
+        if (ranked != null && ranked.size() > maxCandidates) {
+            return facetsInMemory(criteria, maxEditoriales);
+        }
+        SearchCriteria<Book> spec = toSearchCriteria(criteria, ranked);
+        if (spec == null) {
+            return List.of();
+        }
+        List<FacetRow> rows = new ArrayList<>();
+        Object[] totals = facetQuery(spec, FacetRow.TOTAL,
+                "count(" + ALIAS + "), sum(case when " + ALIAS + "." + BookAttribute.STOCK.getProperty() + " > 0 then 1 else 0 end)",
+                null).getSingleResult();
+        rows.add(new FacetRow(FacetRow.TOTAL, null, ((Number) totals[0]).longValue()));
+        rows.add(new FacetRow(FacetRow.CON_STOCK, null, totals[1] != null ? ((Number) totals[1]).longValue() : 0L));
+
+        FACETS.forEach((facet, expression) -> {
+            TypedQuery<Object[]> query = facetQuery(spec, facet, expression + ", count(" + ALIAS + ")", expression);
+            if (Consts.EDITORIAL.equals(facet)) {
+                query.setMaxResults(maxEditoriales + 1);
+            }
+            query.getResultList().forEach(row -> rows.add(new FacetRow(facet, row[0], ((Number) row[1]).longValue())));
+        });
+        return rows;
+    }
+
+    /* Facets de una busqueda libre con mas hits de los que caben en una lista IN: los libros de q salen
+       de Lucene como bitmap, la base de datos solo devuelve los ids que cumplen el resto de criterios
+       y los recuentos se hacen en memoria con los valores del indice de filtros */
+    private List<FacetRow> facetsInMemory(BookSearchCriteria criteria, int maxEditoriales) {
+        RoaringBitmap ids = fullTextIndex.matches(criteria.getQ());
+        SearchCriteria<Book> spec = toSearchCriteria(criteria, null);
+        if (spec == null) {
+            return List.of();
+        }
+        if (!spec.isEmpty()) {
+            String jpql = queryPlans.computeIfAbsent(Long.class.getSimpleName() + "|" + spec.shape(),
+                    key -> "select " + ALIAS + "." + BookAttribute.ID.getProperty() + " from Book " + ALIAS
+                            + " where " + spec.toJpql(ALIAS));
+            TypedQuery<Long> query = entityManager.createQuery(jpql, Long.class);
+            spec.bind(query);
+            RoaringBitmap filtered = new RoaringBitmap();
+            try (Stream<Long> rows = query.getResultStream()) {
+                rows.filter(id -> id <= Integer.MAX_VALUE).forEach(id -> filtered.add(id.intValue()));
+            }
+            ids.and(filtered);
+        }
+        List<FacetRow> rows = filterIndex.facets(ids, maxEditoriales);
+        if (rows == null) {
+            throw new IllegalArgumentException("La busqueda libre encaja con mas de " + fullTextIndex.getMaxCandidates()
+                    + " libros y el indice de filtros no esta disponible para contar sus facets; anada filtros");
+        }
+        return rows;
+    }
+
+    private TypedQuery<Object[]> facetQuery(SearchCriteria<Book> spec, String facet, String selection, String groupBy) {
+        String jpql = queryPlans.computeIfAbsent(FacetRow.class.getSimpleName() + "|" + facet + "|" + spec.shape(),
+                key -> "select " + selection + " from Book " + ALIAS
+                        + (spec.isEmpty() ? "" : " where " + spec.toJpql(ALIAS))
+                        + (groupBy != null ? " group by " + groupBy + " order by count(" + ALIAS + ") desc, " + groupBy : ""));
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class);
+        spec.bind(query);
+        return query;
+    }
+
+    private static String compile(String selection, SearchCriteria<Book> spec, BookSort sort, BookCursor cursor) {
+        StringJoiner where = new StringJoiner(" and ", " where ", "").setEmptyValue("");
+        if (!spec.isEmpty()) {
+            where.add(spec.toJpql(ALIAS));
+        }
+        if (cursor != null) {
+            where.add(cursor.toJpql(ALIAS));
+        }
+        return "select " + selection + " from Book " + ALIAS + where + " " + sort.toJpql(ALIAS);
+    }
+
+    /* Traduce los criterios de la peticion a condiciones de busqueda. Devuelve null si los indices
+       en memoria ya han determinado que no hay resultados. ranked son los ids de la busqueda libre (q). */
+    private SearchCriteria<Book> toSearchCriteria(BookSearchCriteria criteria, List<Long> ranked) {
         SearchCriteria<Book> spec = new SearchCriteria<>();
+        Set<Long> candidates = ranked != null ? new HashSet<>(ranked) : null; //ids resueltos por los indices en memoria, null si no se han usado
 
         if (StringUtils.isNotBlank(criteria.getTitulo())) {
-            spec.add(new SearchStatement(Consts.TITULO, criteria.getTitulo(), SearchOperation.MATCH));
+            candidates = match(spec, candidates, Consts.TITULO, criteria.getTitulo());
         }
         if (StringUtils.isNotBlank(criteria.getAutor())) {
-            spec.add(new SearchStatement(Consts.AUTOR, criteria.getAutor(), SearchOperation.MATCH));
+            candidates = match(spec, candidates, Consts.AUTOR, criteria.getAutor());
         }
         if (criteria.getFechaDePublicacionDesde() != null) {
             spec.add(new SearchStatement(Consts.FECHA_DE_PUBLICACION, criteria.getFechaDePublicacionDesde(), SearchOperation.GREATER_THAN_EQUAL));
@@ -54,7 +488,7 @@ public class BookRepository {
             spec.add(new SearchStatement(Consts.FECHA_DE_PUBLICACION, criteria.getFechaDePublicacionHasta(), SearchOperation.LESS_THAN_EQUAL));
         }
         if (StringUtils.isNotBlank(criteria.getEditorial())) {
-            spec.add(new SearchStatement(Consts.EDITORIAL, criteria.getEditorial(), SearchOperation.MATCH));
+            candidates = match(spec, candidates, Consts.EDITORIAL, criteria.getEditorial());
         }
         if (StringUtils.isNotBlank(criteria.getCategoria())) {
             spec.add(new SearchStatement(Consts.CATEGORIA, criteria.getCategoria(), SearchOperation.EQUAL));
@@ -79,7 +513,85 @@ public class BookRepository {
             spec.add(new SearchStatement(Consts.PRECIO, criteria.getPrecioMax(), SearchOperation.LESS_THAN_EQUAL));
         }
 
-        return repository.findAll(spec);
+        //Los filtros de baja cardinalidad se resuelven antes con bitmaps; sus condiciones SQL se mantienen
+        RoaringBitmap filtered = filterIndex.filter(criteria);
+        if (filtered != null) {
+            if (candidates != null) {
+                candidates.removeIf(id -> !filtered.contains(id.intValue()));
+            } else if (filtered.getLongCardinality() <= filterIndex.getMaxCandidates()) {
+                candidates = new HashSet<>(filtered.getCardinality());
+                for (int id : filtered) {
+                    candidates.add((long) id);
+                }
+            }
+        }
+
+        if (candidates != null) {
+            if (candidates.isEmpty()) {
+                return null;
+            }
+            spec.add(new SearchStatement(Consts.ID, candidates, SearchOperation.IN));
+        }
+
+        return spec;
+    }
+
+    /* Resuelve un MATCH con el indice de texto si es posible; si no (o si coinciden mas libros de los que
+       caben en una lista IN razonable), se delega en el LIKE de SearchCriteria */
+    private Set<Long> match(SearchCriteria<Book> spec, Set<Long> candidates, String field, String value) {
+        Set<Long> ids = textIndex.match(field, value);
+        if (ids == null) {
+            spec.add(new SearchStatement(field, value, SearchOperation.MATCH));
+            return candidates;
+        }
+        if (candidates == null) {
+            return new HashSet<>(ids);
+        }
+        candidates.retainAll(ids);
+        return candidates;
+    }
+
+    /* Tras invalidar las caches y publicar el cambio: cada indice se actualiza por separado, de modo que
+       el fallo de uno no deja sin actualizar a los demas. El segundo incremento de la epoca descarta las
+       busquedas cacheadas mientras los indices aun no reflejaban el cambio. Durante una reconstruccion,
+       la actualizacion se aplica igualmente y ademas se guarda para repetirla al terminar. */
+    private void updateIndexes(Consumer<BookIndex> update) {
+        rebuildLock.lock();
+        try {
+            if (pendingUpdates != null) {
+                pendingUpdates.add(update);
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+        applyToIndexes(update);
+        epoch.bump();
+    }
+
+    private void applyToIndexes(Consumer<BookIndex> update) {
+        for (BookIndex index : indexes) {
+            try {
+                update.accept(index);
+                index.refresh();
+            } catch (RuntimeException e) {
+                log.error("No se pudo actualizar el indice {}; queda desfasado hasta la siguiente reconstruccion",
+                        index.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    /* Los indices en memoria solo reflejan escrituras confirmadas */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 
 }
@@ -0,0 +1,26 @@
+package com.unir.products.data;
+
+import com.unir.products.data.model.CatalogueVersion;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/* Contador global de cambios del catalogo. BookRepository lo incrementa tras cada escritura
+   confirmada; permite validar listados y busquedas sin consultar la base de datos. */
+@Component
+public class CatalogueEpoch {
+
+    private final String bootId = Long.toString(UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE, 36);
+    private final AtomicReference<CatalogueVersion> current =
+            new AtomicReference<>(new CatalogueVersion(bootId, 0, System.currentTimeMillis()));
+
+    public CatalogueVersion current() {
+        return current.get();
+    }
+
+    public CatalogueVersion bump() {
+        return current.updateAndGet(version ->
+                new CatalogueVersion(bootId, version.epoch() + 1, System.currentTimeMillis()));
+    }
+}
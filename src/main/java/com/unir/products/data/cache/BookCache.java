@@ -0,0 +1,84 @@
+package com.unir.products.data.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.unir.products.data.model.Book;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/* Cache de lectura de libros por id, acotada por tamaño y por tiempo de vida.
+   Book es mutable: se guarda una copia desacoplada de la entidad cargada y cada llamada recibe
+   su propia copia, de modo que ningun llamante puede alterar lo que ven los demas. */
+@Component
+public class BookCache {
+
+    private final Cache<Long, Book> cache;
+
+    public BookCache(@Value("${catalogue.cache.books.maximum-size:10000}") long maximumSize,
+                     @Value("${catalogue.cache.books.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /* Si el loader devuelve null (libro inexistente) no se guarda nada. stale se consulta tras cargar:
+       si es true, lo cargado se devuelve pero no se conserva (p. ej. leido de una replica retrasada) */
+    public Book get(Long id, Function<Long, Book> loader, BooleanSupplier stale) {
+        AtomicReference<Book> loaded = new AtomicReference<>();
+        Book book = cache.get(id, key -> {
+            loaded.set(copy(loader.apply(key)));
+            return loaded.get();
+        });
+        if (loaded.get() != null && stale.getAsBoolean()) {
+            cache.asMap().remove(id, loaded.get());
+        }
+        return copy(book);
+    }
+
+    /* Los ids que faltan se cargan todos juntos; los que el loader no devuelve no aparecen en el resultado */
+    public Map<Long, Book> getAll(Collection<Long> ids, Function<Set<? extends Long>, Map<Long, Book>> loader,
+                                  BooleanSupplier stale) {
+        Map<Long, Book> loaded = new HashMap<>();
+        Map<Long, Book> found = cache.getAll(ids, missing -> {
+            loader.apply(missing).forEach((id, book) -> loaded.put(id, book.copy()));
+            return loaded;
+        });
+        if (!loaded.isEmpty() && stale.getAsBoolean()) {
+            loaded.forEach(cache.asMap()::remove);
+        }
+        Map<Long, Book> copies = new LinkedHashMap<>();
+        found.forEach((id, book) -> copies.put(id, book.copy()));
+        return copies;
+    }
+
+    public void invalidate(Long id) {
+        if (id != null) {
+            cache.invalidate(id);
+        }
+    }
+
+    private static Book copy(Book book) {
+        return book != null ? book.copy() : null;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
@@ -0,0 +1,48 @@
+package com.unir.products.data.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/* JSON ya serializado de cada libro, acotado por memoria. Cada entrada lleva la version de la fila:
+   un libro con otra version se vuelve a serializar aunque la invalidacion tras el commit no haya llegado. */
+@Component
+public class BookJsonCache {
+
+    private record Entry(long version, RawJsonBytes json) {
+    }
+
+    private final boolean enabled;
+    private final Cache<Long, Entry> cache;
+
+    public BookJsonCache(@Value("${catalogue.cache.json.enabled:true}") boolean enabled,
+                         @Value("${catalogue.cache.json.max-memory:64MB}") DataSize maxMemory) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((Long id, Entry entry) -> 64 + entry.json().byteLength())
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /* null si no hay JSON para esa version del libro */
+    public RawJsonBytes get(Long id, long version) {
+        Entry entry = cache.getIfPresent(id);
+        return entry != null && entry.version() == version ? entry.json() : null;
+    }
+
+    public void put(Long id, long version, RawJsonBytes json) {
+        cache.put(id, new Entry(version, json));
+    }
+
+    public void invalidate(Long id) {
+        if (id != null) {
+            cache.invalidate(id);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.unir.products.data.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.unir.products.data.model.Book;
+import com.unir.products.data.model.BookSummary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/* Cache de resultados de busqueda, acotada por memoria estimada (expulsion W-TinyLFU de Caffeine).
+   Las claves incluyen la epoca del catalogo: tras una escritura las entradas antiguas dejan de ser
+   alcanzables y se descartan al ver la primera busqueda de la nueva epoca. */
+@Component
+public class SearchResultCache {
+
+    //Estimacion de cabeceras de objeto, referencias y campos numericos por libro
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final Cache<Object, List<?>> cache;
+    private final AtomicLong epoch = new AtomicLong();
+
+    public SearchResultCache(@Value("${catalogue.cache.search.max-memory:64MB}") DataSize maxMemory,
+                             @Value("${catalogue.cache.search.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((Object key, List<?> books) -> weigh(books))
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /* Las peticiones identicas y simultaneas esperan a una sola consulta. stale se consulta tras cargar:
+       si es true, el resultado se devuelve pero no se conserva (la epoca solo sigue las escrituras del
+       primario y no protege de una replica retrasada). Como en BookCache, cada llamada recibe copias de
+       los libros; los BookSummary no tienen setters y se comparten. */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(long currentEpoch, Object key, Supplier<List<T>> loader, BooleanSupplier stale) {
+        long seen = epoch.get();
+        if (currentEpoch > seen && epoch.compareAndSet(seen, currentEpoch)) {
+            cache.invalidateAll();
+        }
+        AtomicReference<List<?>> loaded = new AtomicReference<>();
+        List<?> results = cache.get(key, k -> {
+            loaded.set(List.copyOf(loader.get()));
+            return loaded.get();
+        });
+        if (loaded.get() != null && stale.getAsBoolean()) {
+            cache.asMap().remove(key, loaded.get());
+        }
+        return (List<T>) copy(results);
+    }
+
+    private static List<?> copy(List<?> results) {
+        return results.stream()
+                .map(result -> result instanceof Book book ? book.copy() : result)
+                .toList();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static int weigh(List<?> books) {
+        long bytes = 64;
+        for (Object book : books) {
+            bytes += ENTRY_OVERHEAD + switch (book) {
+                case Book b -> chars(b.getTitulo(), b.getAutor(), b.getEditorial(), b.getCategoria(),
+                        b.getIsbn(), b.getPortada(), b.getSinopsis());
+                case BookSummary s -> chars(s.getTitulo(), s.getAutor(), s.getEditorial(), s.getCategoria(), s.getIsbn());
+                default -> 0;
+            };
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private static long chars(String... values) {
+        long bytes = 0;
+        for (String value : values) {
+            bytes += value == null ? 0 : 40 + 2L * value.length();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,85 @@
+package com.unir.products.data.feed;
+
+import com.unir.products.data.model.BookChange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/* Registro de cambios en memoria: buffer circular con los ultimos 'capacity' cambios confirmados.
+   BookRepository añade los cambios tras el commit, de modo que el registro nunca contiene escrituras
+   deshechas. Los consumidores piden los cambios posteriores a una secuencia o se suscriben a ellos. */
+@Component
+public class BookChangeFeed {
+
+    private final BookChange[] ring;
+    private final List<Consumer<BookChange>> listeners = new CopyOnWriteArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long head; //ultima secuencia asignada, 0 si aun no hay cambios
+
+    public BookChangeFeed(@Value("${catalogue.changes.capacity:10000}") int capacity) {
+        this.ring = new BookChange[capacity];
+    }
+
+    public void append(BookChange.Type type, Long bookId, Long version) {
+        lock.writeLock().lock();
+        try {
+            BookChange change = new BookChange(++head, type, bookId, version, System.currentTimeMillis());
+            ring[(int) (change.sequence() % ring.length)] = change;
+            //bajo el bloqueo para que cada suscriptor reciba los cambios en orden; los oyentes no deben bloquear
+            listeners.forEach(listener -> listener.accept(change));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long head() {
+        lock.readLock().lock();
+        try {
+            return head;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Cambios con secuencia mayor que 'since' (como mucho 'limit'), o null si ya no estan en el
+       buffer o la secuencia no corresponde a este arranque */
+    public List<BookChange> since(long since, int limit) {
+        lock.readLock().lock();
+        try {
+            if (!available(since)) return null;
+            List<BookChange> changes = new ArrayList<>();
+            for (long sequence = since + 1; sequence <= head && changes.size() < limit; sequence++) {
+                changes.add(ring[(int) (sequence % ring.length)]);
+            }
+            return changes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Entrega al oyente los cambios pendientes desde 'since' y despues los nuevos, sin huecos.
+       Devuelve la accion para cancelar la suscripcion, o null si 'since' ya no esta disponible. */
+    public Runnable subscribe(long since, Consumer<BookChange> listener) {
+        lock.writeLock().lock();
+        try {
+            if (!available(since)) return null;
+            for (long sequence = since + 1; sequence <= head; sequence++) {
+                listener.accept(ring[(int) (sequence % ring.length)]);
+            }
+            listeners.add(listener);
+            return () -> listeners.remove(listener);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean available(long since) {
+        return since >= 0 && since <= head && since >= head - ring.length;
+    }
+}
@@ -1,5 +1,6 @@
 package com.unir.products.data.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.unir.products.controller.model.BookDto;
 import com.unir.products.data.utils.Consts;
 import jakarta.persistence.Column;
@@ -7,31 +8,58 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDate;
+import java.util.Objects;
 
+/* Indices alineados con los filtros que genera BookRepository.search (y con findByIsbn en cada alta).
+   Los MATCH (lower(col) LIKE '%x%') no pueden usar indices B-tree: los resuelve BookTextIndex.
+   El del ISBN es unico: dos altas simultaneas del mismo ISBN no pasan las dos. */
 @Entity
-@Table(name = "libros")
+@DynamicUpdate //los UPDATE incluyen solo las columnas modificadas
+@Table(name = "libros", uniqueConstraints = {
+		@UniqueConstraint(name = Book.TITULO_UNIQUE, columnNames = Consts.TITULO)
+}, indexes = {
+		@Index(name = Book.ISBN_UNIQUE, columnList = Consts.ISBN, unique = true),
+		@Index(name = "idx_libros_categoria", columnList = Consts.CATEGORIA),
+		@Index(name = "idx_libros_visible_stock", columnList = Consts.VISIBLE + ", " + Consts.STOCK),
+		@Index(name = "idx_libros_precio", columnList = Consts.PRECIO),
+		@Index(name = "idx_libros_fecha_de_publicacion", columnList = Consts.FECHA_DE_PUBLICACION),
+		@Index(name = "idx_libros_valoracion", columnList = Consts.VALORACION)
+})
 @Getter
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @ToString
 public class Book {
+
+	//nombres de las restricciones unicas, para reconocerlas en las violaciones de integridad
+	public static final String ISBN_UNIQUE = "idx_libros_isbn";
+	public static final String TITULO_UNIQUE = "uk_libros_titulo";
 	
+	//Con IDENTITY Hibernate no puede agrupar los INSERT en lotes JDBC; la secuencia reserva ids de 50 en 50.
+	//Empieza en 1000 para no chocar con los ids fijos de data.sql.
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "libros_seq")
+	@SequenceGenerator(name = "libros_seq", sequenceName = "libros_seq", initialValue = 1000, allocationSize = 50)
 	private Long id;
 	
-	@Column(name = Consts.TITULO, unique = true)
+	@Column(name = Consts.TITULO)
 	private String titulo;
 	
 	@Column(name = Consts.AUTOR)
@@ -67,10 +95,40 @@ public class Book {
 	
 	@Column(name = Consts.PRECIO)
 	private Double precio;
+
+	//Version para bloqueo optimista y ETags. Por defecto 0 para las filas insertadas por SQL (data.sql).
+	@Version
+	@JsonIgnore
+	@ColumnDefault("0")
+	@Column(name = Consts.VERSION, nullable = false)
+	private Long version;
 	
 
-	public void update(BookDto bookDto) {
+	/* Copia desacoplada de la sesion: la cache guarda y entrega copias para que nadie modifique la de otros */
+	public Book copy() {
+		return toBuilder().build();
+	}
+
+	/* Devuelve false si el DTO coincide con el libro (PUT sin cambios). Con @DynamicUpdate,
+	   Hibernate solo incluye en el UPDATE las columnas que realmente cambian. */
+	public boolean update(BookDto bookDto) {
 		
+		boolean changed = !Objects.equals(this.titulo, bookDto.getTitulo())
+				|| !Objects.equals(this.autor, bookDto.getAutor())
+				|| !Objects.equals(this.fecha_de_publicacion, bookDto.getFecha_de_publicacion())
+				|| !Objects.equals(this.editorial, bookDto.getEditorial())
+				|| !Objects.equals(this.categoria, bookDto.getCategoria())
+				|| !Objects.equals(this.isbn, bookDto.getIsbn())
+				|| !Objects.equals(this.portada, bookDto.getPortada())
+				|| !Objects.equals(this.sinopsis, bookDto.getSinopsis())
+				|| !Objects.equals(this.valoracion, bookDto.getValoracion())
+				|| !Objects.equals(this.visible, bookDto.getVisible())
+				|| !Objects.equals(this.stock, bookDto.getStock())
+				|| !Objects.equals(this.precio, bookDto.getPrecio());
+		if (!changed) {
+			return false;
+		}
+
 		this.titulo = bookDto.getTitulo();
 		this.autor = bookDto.getAutor();
 		/* this.fechaDePublicacion = bookDto.getFechaDePublicacion(); */
@@ -84,6 +142,7 @@ public class Book {
 		this.visible = bookDto.getVisible();
 		this.stock = bookDto.getStock();
 		this.precio = bookDto.getPrecio();
+		return true;
 	}
 
 }
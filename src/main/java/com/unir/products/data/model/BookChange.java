@@ -0,0 +1,13 @@
+package com.unir.products.data.model;
+
+/* Cambio confirmado sobre un libro. La secuencia es creciente y sin huecos dentro de un arranque.
+   version es la version de la fila tras el cambio (null en las bajas): una lectura posterior que
+   devuelva una version menor viene de una replica que aun no tiene el cambio. */
+public record BookChange(long sequence, Type type, Long bookId, Long version, long timestamp) {
+
+    public enum Type {
+        //alta o modificacion: el consumidor vuelve a leer el libro
+        UPSERT,
+        DELETE
+    }
+}
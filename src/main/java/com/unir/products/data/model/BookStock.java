@@ -0,0 +1,5 @@
+package com.unir.products.data.model;
+
+/* Stock y version de un libro tras una reserva, leidos sin cargar la entidad */
+public record BookStock(int stock, Long version) {
+}
@@ -0,0 +1,5 @@
+package com.unir.products.data.model;
+
+/* Sugerencia de autocompletado: titulo o autor, con la mejor valoracion de sus libros como peso */
+public record BookSuggestion(String text, String field, double valoracion) {
+}
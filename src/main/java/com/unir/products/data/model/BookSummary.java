@@ -0,0 +1,39 @@
+package com.unir.products.data.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/* Vista resumida de un libro para los listados: sin sinopsis ni portada.
+   Se construye directamente en la consulta (constructor expression), sin entidades gestionadas. */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+public class BookSummary {
+
+	private Long id;
+
+	private String titulo;
+
+	private String autor;
+
+	private LocalDate fecha_de_publicacion;
+
+	private String editorial;
+
+	private String categoria;
+
+	private String isbn;
+
+	private Double valoracion;
+
+	private Boolean visible;
+
+	private Integer stock;
+
+	private Double precio;
+}
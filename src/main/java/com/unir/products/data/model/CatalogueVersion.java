@@ -0,0 +1,6 @@
+package com.unir.products.data.model;
+
+/* Estado del catalogo completo: cambia con cada escritura confirmada. El bootId distingue
+   arranques distintos, ya que el contador vuelve a empezar con cada instancia. */
+public record CatalogueVersion(String bootId, long epoch, long lastModified) {
+}
@@ -0,0 +1,9 @@
+package com.unir.products.data.model;
+
+/* Fila de los recuentos de facets: numero de libros con un valor (o tramo) de un facet.
+   facet es la clave de Consts del campo agrupado, o TOTAL / CON_STOCK para los recuentos globales. */
+public record FacetRow(String facet, Object value, Long total) {
+
+    public static final String TOTAL = "total";
+    public static final String CON_STOCK = "conStock";
+}
@@ -0,0 +1,276 @@
+package com.unir.products.data.search;
+
+import com.unir.products.controller.model.BookSearchCriteria;
+import com.unir.products.data.model.Book;
+import com.unir.products.data.model.FacetRow;
+import com.unir.products.data.utils.Consts;
+import com.unir.products.data.utils.FacetBands;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/* Bitmaps comprimidos (Roaring) por categoria, visible, con stock y tramos de precio y valoracion.
+   Los filtros de baja cardinalidad se resuelven con AND/OR de bitmaps antes de ir a la base de datos.
+   El resultado es un superconjunto exacto de los ids buscados (los tramos de precio y valoracion
+   son mas anchos que el rango pedido): las condiciones SQL se siguen aplicando sobre los candidatos. */
+@Component
+@Slf4j
+public class BookFilterIndex implements BookIndex {
+
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final boolean enabled;
+    private final int maxCandidates;
+
+    private final Map<String, RoaringBitmap> categorias = new HashMap<>();
+    private final RoaringBitmap visible = new RoaringBitmap();
+    private final RoaringBitmap hidden = new RoaringBitmap();
+    private final RoaringBitmap inStock = new RoaringBitmap();
+    private final RoaringBitmap[] precios = bitmaps(FacetBands.PRECIO);
+    private final RoaringBitmap[] valoraciones = bitmaps(FacetBands.VALORACION);
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //false hasta la primera reconstruccion, o si algun id no cabe en un int: el indice no responde
+    //hasta la siguiente reconstruccion
+    private boolean complete;
+
+    /* Valores indexados de cada libro, para poder retirarlo de sus bitmaps y contar sus facets */
+    private record Entry(String categoria, String editorial, Boolean visible, boolean inStock, Integer precio, Integer valoracion) {
+    }
+
+    public BookFilterIndex(@Value("${catalogue.search.filter-index.enabled:true}") boolean enabled,
+                           @Value("${catalogue.search.filter-index.max-candidates:5000}") int maxCandidates) {
+        this.enabled = enabled;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /* Maximo de ids que compensa enviar como lista IN cuando no hay otros candidatos */
+    public int getMaxCandidates() {
+        return maxCandidates;
+    }
+
+    @Override
+    public void rebuild(Collection<Book> books) {
+        if (!enabled) return;
+        lock.writeLock().lock();
+        try {
+            categorias.clear();
+            List.of(visible, hidden, inStock).forEach(RoaringBitmap::clear);
+            List.of(precios, valoraciones).forEach(bands -> {
+                for (RoaringBitmap band : bands) band.clear();
+            });
+            entries.clear();
+            complete = true;
+            books.forEach(this::add);
+            categorias.values().forEach(RoaringBitmap::runOptimize);
+            log.info("Indice de filtros reconstruido con {} libros y {} categorias", entries.size(), categorias.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void index(Book book) {
+        if (!enabled || book.getId() == null) return;
+        lock.writeLock().lock();
+        try {
+            removeEntry(book.getId());
+            add(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long id) {
+        if (!enabled || id == null) return;
+        lock.writeLock().lock();
+        try {
+            removeEntry(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void stockChanged(Long id, int stock) {
+        if (!enabled || id == null || !fits(id)) return;
+        lock.writeLock().lock();
+        try {
+            int key = id.intValue();
+            Entry entry = entries.get(key);
+            if (entry != null && entry.inStock() != stock > 0) {
+                entries.put(key, new Entry(entry.categoria(), entry.editorial(), entry.visible(), stock > 0, entry.precio(), entry.valoracion()));
+                if (stock > 0) inStock.add(key);
+                else inStock.remove(key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* Ids que pueden cumplir los filtros de categoria, visible, conStock, precio y valoracion,
+       o null si la busqueda no usa ninguno o el indice no puede responder. */
+    public RoaringBitmap filter(BookSearchCriteria criteria) {
+        if (!enabled) return null;
+
+        lock.readLock().lock();
+        try {
+            if (!complete) return null;
+            List<RoaringBitmap> filters = new ArrayList<>();
+            if (StringUtils.hasText(criteria.getCategoria())) {
+                filters.add(categorias.getOrDefault(categoriaKey(criteria.getCategoria()), EMPTY));
+            }
+            if (criteria.getVisible() != null) {
+                filters.add(criteria.getVisible() ? visible : hidden);
+            }
+            if (Boolean.TRUE.equals(criteria.getConStock())) {
+                filters.add(inStock);
+            }
+            if (criteria.getPrecioMin() != null || criteria.getPrecioMax() != null) {
+                filters.add(range(precios, FacetBands.PRECIO, criteria.getPrecioMin(), criteria.getPrecioMax()));
+            }
+            if (criteria.getValoracionMin() != null) {
+                filters.add(range(valoraciones, FacetBands.VALORACION, criteria.getValoracionMin(), null));
+            }
+            if (filters.isEmpty()) return null;
+            //siempre un bitmap nuevo: los del indice no salen del bloqueo
+            return filters.size() == 1 ? filters.getFirst().clone() : FastAggregation.and(filters.iterator());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Recuentos de facets de los libros del bitmap, con las mismas filas que el GROUP BY de
+       BookRepository.facets (solo las maxEditoriales editoriales mas frecuentes), o null si el indice
+       no puede responder. Los valores se agrupan tal cual estan en la tabla, sin la collation de la
+       base de datos. */
+    public List<FacetRow> facets(RoaringBitmap ids, int maxEditoriales) {
+        if (!enabled) return null;
+
+        lock.readLock().lock();
+        try {
+            if (!complete) return null;
+            long total = 0;
+            long conStock = 0;
+            Map<String, Map<Object, Long>> counts = new LinkedHashMap<>();
+            List.of(Consts.CATEGORIA, Consts.EDITORIAL, Consts.PRECIO, Consts.VALORACION)
+                    .forEach(facet -> counts.put(facet, new HashMap<>()));
+            for (int id : ids) {
+                Entry entry = entries.get(id);
+                if (entry == null) continue;
+                total++;
+                if (entry.inStock()) conStock++;
+                count(counts.get(Consts.CATEGORIA), entry.categoria());
+                count(counts.get(Consts.EDITORIAL), entry.editorial());
+                count(counts.get(Consts.PRECIO), entry.precio());
+                count(counts.get(Consts.VALORACION), entry.valoracion());
+            }
+
+            List<FacetRow> rows = new ArrayList<>();
+            rows.add(new FacetRow(FacetRow.TOTAL, null, total));
+            rows.add(new FacetRow(FacetRow.CON_STOCK, null, conStock));
+            counts.forEach((facet, values) -> values.entrySet().stream()
+                    .sorted(Map.Entry.<Object, Long>comparingByValue().reversed()
+                            .thenComparing(value -> value.getKey().toString()))
+                    .limit(Consts.EDITORIAL.equals(facet) ? maxEditoriales : Long.MAX_VALUE)
+                    .forEach(value -> rows.add(new FacetRow(facet, value.getKey(), value.getValue()))));
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //los libros sin valor no cuentan en el facet: el grupo null del GROUP BY tambien se descarta al leerlo
+    private static void count(Map<Object, Long> counts, Object value) {
+        if (value != null) counts.merge(value, 1L, Long::sum);
+    }
+
+    private void add(Book book) {
+        if (!fits(book.getId())) {
+            complete = false;
+            return;
+        }
+        int key = book.getId().intValue();
+        Entry entry = new Entry(book.getCategoria(), book.getEditorial(), book.getVisible(),
+                book.getStock() != null && book.getStock() > 0,
+                book.getPrecio() != null ? FacetBands.PRECIO.band(book.getPrecio()) : null,
+                book.getValoracion() != null ? FacetBands.VALORACION.band(book.getValoracion()) : null);
+        entries.put(key, entry);
+
+        if (entry.categoria() != null) categorias.computeIfAbsent(categoriaKey(entry.categoria()), c -> new RoaringBitmap()).add(key);
+        if (entry.visible() != null) (entry.visible() ? visible : hidden).add(key);
+        if (entry.inStock()) inStock.add(key);
+        if (entry.precio() != null) precios[entry.precio()].add(key);
+        if (entry.valoracion() != null) valoraciones[entry.valoracion()].add(key);
+    }
+
+    private void removeEntry(Long id) {
+        if (!fits(id)) return;
+        int key = id.intValue();
+        Entry entry = entries.remove(key);
+        if (entry == null) return;
+
+        if (entry.categoria() != null) {
+            String categoria = categoriaKey(entry.categoria());
+            RoaringBitmap ids = categorias.get(categoria);
+            if (ids != null) {
+                ids.remove(key);
+                if (ids.isEmpty()) categorias.remove(categoria);
+            }
+        }
+        if (entry.visible() != null) (entry.visible() ? visible : hidden).remove(key);
+        inStock.remove(key);
+        if (entry.precio() != null) precios[entry.precio()].remove(key);
+        if (entry.valoracion() != null) valoraciones[entry.valoracion()].remove(key);
+    }
+
+    /* Clave de categoria tan laxa como la collation mas laxa de la base de datos (MySQL: sin distinguir
+       mayusculas ni acentos y sin espacios finales). El bitmap es asi un superconjunto de lo que acepta
+       el EQUAL de SQL, que se sigue aplicando y decide con la collation real. */
+    private static String categoriaKey(String categoria) {
+        String folded = Normalizer.normalize(categoria, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        return folded.stripTrailing();
+    }
+
+    /* OR de los tramos que se solapan con [min, max] */
+    private static RoaringBitmap range(RoaringBitmap[] bitmaps, FacetBands bands, Double min, Double max) {
+        int from = min != null ? bands.band(min) : 0;
+        int to = max != null ? bands.band(max) : bands.size() - 1;
+        if (from > to) return EMPTY;
+        List<RoaringBitmap> selected = new ArrayList<>();
+        for (int band = from; band <= to; band++) {
+            selected.add(bitmaps[band]);
+        }
+        return FastAggregation.or(selected.iterator());
+    }
+
+    private static RoaringBitmap[] bitmaps(FacetBands bands) {
+        RoaringBitmap[] bitmaps = new RoaringBitmap[bands.size()];
+        for (int i = 0; i < bitmaps.length; i++) {
+            bitmaps[i] = new RoaringBitmap();
+        }
+        return bitmaps;
+    }
+
+    private static boolean fits(Long id) {
+        return id != null && id >= 0 && id <= Integer.MAX_VALUE;
+    }
+}
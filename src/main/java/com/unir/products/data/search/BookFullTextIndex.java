@@ -0,0 +1,223 @@
+package com.unir.products.data.search;
+
+import com.unir.products.data.model.Book;
+import com.unir.products.data.utils.Consts;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/* Indice Lucene para la busqueda libre (q=) sobre titulo, autor y sinopsis, con puntuacion BM25.
+   Se reconstruye al arrancar y se actualiza tras cada escritura confirmada; las busquedas ven los
+   cambios cuando se refresca el SearcherManager, una vez por transaccion (sin commit a disco). */
+@Component
+@Slf4j
+public class BookFullTextIndex implements BookIndex {
+
+    private static final String ID = Consts.ID;
+    private static final String[] FIELDS = {Consts.TITULO, Consts.AUTOR, Consts.SINOPSIS};
+    private static final Map<String, Float> BOOSTS = Map.of(Consts.TITULO, 3f, Consts.AUTOR, 2f, Consts.SINOPSIS, 1f);
+
+    private final int maxHits;
+    private final int maxCandidates;
+    private final SpanishFoldingAnalyzer analyzer = new SpanishFoldingAnalyzer();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    public BookFullTextIndex(@Value("${catalogue.search.full-text.directory:}") String path,
+                             @Value("${catalogue.search.full-text.max-hits:1000}") int maxHits,
+                             @Value("${catalogue.search.full-text.max-candidates:5000}") int maxCandidates) throws IOException {
+        this.maxHits = maxHits;
+        this.maxCandidates = maxCandidates;
+        //sin ruta configurada el indice vive en memoria: se reconstruye en cada arranque y no deja ficheros
+        this.directory = StringUtils.hasText(path)
+                ? FSDirectory.open(Files.createDirectories(Path.of(path)))
+                : new ByteBuffersDirectory();
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE)
+                .setSimilarity(new BM25Similarity()));
+        this.searcherManager = new SearcherManager(writer, null);
+        log.info("Indice de texto completo en {}", StringUtils.hasText(path) ? path : "memoria");
+    }
+
+    public int getMaxHits() {
+        return maxHits;
+    }
+
+    /* Maximo de hits que se envian a la base de datos como lista IN */
+    public int getMaxCandidates() {
+        return maxCandidates;
+    }
+
+    @Override
+    public void rebuild(Collection<Book> books) {
+        try {
+            writer.deleteAll();
+            for (Book book : books) {
+                writer.addDocument(toDocument(book));
+            }
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+            log.info("Indice de texto completo reconstruido con {} libros", books.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void index(Book book) {
+        if (book.getId() == null) return;
+        try {
+            writer.updateDocument(new Term(ID, book.getId().toString()), toDocument(book));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void remove(Long id) {
+        if (id == null) return;
+        try {
+            writer.deleteDocuments(new Term(ID, id.toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void refresh() {
+        try {
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /* Ids de los libros que encajan con el texto, de mayor a menor relevancia (como mucho hits) */
+    public List<Long> search(String text, int hits) {
+        Query query = parse(text);
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                searcher.setSimilarity(new BM25Similarity());
+                List<Long> ids = new ArrayList<>();
+                //el tamaño de la cola de Lucene no pasa del numero de documentos
+                int n = Math.max(1, Math.min(hits, searcher.getIndexReader().maxDoc()));
+                for (ScoreDoc hit : searcher.search(query, n).scoreDocs) {
+                    ids.add(Long.valueOf(searcher.storedFields().document(hit.doc).get(ID)));
+                }
+                return ids;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /* Todos los libros que encajan con el texto, sin puntuar ni ordenar. Los ids que no caben en un int
+       se omiten: con ellos el indice de filtros tampoco esta completo y no cuenta sobre este bitmap. */
+    public RoaringBitmap matches(String text) {
+        Query query = parse(text);
+        RoaringBitmap ids = new RoaringBitmap();
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                searcher.search(query, new SimpleCollector() {
+                    private NumericDocValues values;
+
+                    @Override
+                    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                        values = DocValues.getNumeric(context.reader(), ID);
+                    }
+
+                    @Override
+                    public void collect(int doc) throws IOException {
+                        if (values.advanceExact(doc) && values.longValue() >= 0 && values.longValue() <= Integer.MAX_VALUE) {
+                            ids.add((int) values.longValue());
+                        }
+                    }
+
+                    @Override
+                    public ScoreMode scoreMode() {
+                        return ScoreMode.COMPLETE_NO_SCORES;
+                    }
+                });
+                return ids;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private Query parse(String text) {
+        try {
+            MultiFieldQueryParser parser = new MultiFieldQueryParser(FIELDS, analyzer, BOOSTS);
+            return parser.parse(QueryParser.escape(text));
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Texto de busqueda no valido: " + text, e);
+        }
+    }
+
+    private static Document toDocument(Book book) {
+        Document document = new Document();
+        document.add(new StringField(ID, book.getId().toString(), Field.Store.YES));
+        //el id tambien como doc value: matches() lo lee sin cargar los campos almacenados
+        document.add(new NumericDocValuesField(ID, book.getId()));
+        addText(document, Consts.TITULO, book.getTitulo());
+        addText(document, Consts.AUTOR, book.getAutor());
+        addText(document, Consts.SINOPSIS, book.getSinopsis());
+        return document;
+    }
+
+    private static void addText(Document document, String field, String value) {
+        if (value != null) {
+            document.add(new TextField(field, value, Field.Store.NO));
+        }
+    }
+}
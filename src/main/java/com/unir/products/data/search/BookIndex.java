@@ -0,0 +1,24 @@
+package com.unir.products.data.search;
+
+import com.unir.products.data.model.Book;
+
+import java.util.Collection;
+
+/* Estructura en memoria que se mantiene sincronizada con la tabla de libros.
+   BookRepository la reconstruye al arrancar y la actualiza tras cada escritura confirmada. */
+public interface BookIndex {
+
+    void rebuild(Collection<Book> books);
+
+    void index(Book book);
+
+    void remove(Long id);
+
+    /* Cambio de stock sin cargar la entidad (reservas con UPDATE directo) */
+    default void stockChanged(Long id, int stock) {
+    }
+
+    /* Fin de un lote de cambios confirmados: los indices que publican sus cambios de una vez lo hacen aqui */
+    default void refresh() {
+    }
+}
@@ -0,0 +1,20 @@
+package com.unir.products.data.search;
+
+import com.unir.products.data.BookRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/* Carga los indices en memoria una vez inicializada la base de datos (data.sql se ejecuta tras Hibernate) */
+@Component
+@RequiredArgsConstructor
+public class BookIndexLoader {
+
+    private final BookRepository repository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        repository.rebuildIndexes();
+    }
+}
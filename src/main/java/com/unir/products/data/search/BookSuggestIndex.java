@@ -0,0 +1,308 @@
+package com.unir.products.data.search;
+
+import com.unir.products.data.model.Book;
+import com.unir.products.data.model.BookSuggestion;
+import com.unir.products.data.utils.Consts;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/* Trie de prefijos para el autocompletado de titulos y autores.
+   - Cada texto se inserta desde el comienzo de cada una de sus palabras ("sangre" sugiere "Alas de sangre"),
+     en minusculas y sin acentos.
+   - Cada nodo guarda sus hijos en arrays ordenados y los mejores resultados de su subarbol ya calculados,
+     de modo que una consulta solo recorre el prefijo.
+   - Al cambiar un libro se recalculan unicamente los nodos de las rutas de sus textos. */
+@Component
+@Slf4j
+public class BookSuggestIndex implements BookIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Comparator<Term> BY_WEIGHT = Comparator.comparingDouble(Term::weight).reversed()
+            .thenComparing(term -> term.text);
+
+    private final int maxResults;
+    private final int maxKeyLength;
+
+    private Node root = new Node();
+    private final Map<String, Term> terms = new HashMap<>();
+    private final Map<Long, List<Term>> byBook = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /* Texto sugerible y valoracion de cada libro que lo contiene */
+    private static final class Term {
+        private final String text;
+        private final String field;
+        private final List<String> keys;
+        private final Map<Long, Double> books = new HashMap<>();
+
+        private Term(String text, String field, List<String> keys) {
+            this.text = text;
+            this.field = field;
+            this.keys = keys;
+        }
+
+        private double weight() {
+            double weight = 0;
+            for (Double valoracion : books.values()) {
+                weight = Math.max(weight, valoracion);
+            }
+            return weight;
+        }
+    }
+
+    private static final class Node {
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private Term[] terminals = new Term[0];
+        private Term[] top = new Term[0];
+
+        private Node child(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            return i >= 0 ? children[i] : null;
+        }
+
+        private Node addChild(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i >= 0) return children[i];
+            int at = -i - 1;
+            labels = insert(labels, at, label);
+            Node node = new Node();
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, at);
+            grown[at] = node;
+            System.arraycopy(children, at, grown, at + 1, children.length - at);
+            children = grown;
+            return node;
+        }
+
+        private void removeChild(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i < 0) return;
+            char[] labelsLeft = new char[labels.length - 1];
+            Node[] childrenLeft = new Node[children.length - 1];
+            System.arraycopy(labels, 0, labelsLeft, 0, i);
+            System.arraycopy(labels, i + 1, labelsLeft, i, labels.length - i - 1);
+            System.arraycopy(children, 0, childrenLeft, 0, i);
+            System.arraycopy(children, i + 1, childrenLeft, i, children.length - i - 1);
+            labels = labelsLeft;
+            children = childrenLeft;
+        }
+
+        private boolean isEmpty() {
+            return children.length == 0 && terminals.length == 0;
+        }
+
+        private static char[] insert(char[] array, int at, char value) {
+            char[] grown = new char[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, at);
+            grown[at] = value;
+            System.arraycopy(array, at, grown, at + 1, array.length - at);
+            return grown;
+        }
+    }
+
+    public BookSuggestIndex(@Value("${catalogue.search.suggest.max-results:10}") int maxResults,
+                            @Value("${catalogue.search.suggest.max-key-length:40}") int maxKeyLength) {
+        this.maxResults = maxResults;
+        this.maxKeyLength = maxKeyLength;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    @Override
+    public void rebuild(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            root = new Node();
+            terms.clear();
+            byBook.clear();
+            for (Book book : books) {
+                add(book, false);
+            }
+            computeTop(root);
+            log.info("Indice de sugerencias reconstruido con {} textos", terms.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void index(Book book) {
+        if (book.getId() == null) return;
+        lock.writeLock().lock();
+        try {
+            removeBook(book.getId());
+            add(book, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long id) {
+        if (id == null) return;
+        lock.writeLock().lock();
+        try {
+            removeBook(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* Los mejores textos (por valoracion) que contienen una palabra que empieza por el prefijo */
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) return List.of();
+        if (key.length() > maxKeyLength) key = key.substring(0, maxKeyLength);
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) return List.of();
+            return Arrays.stream(node.top)
+                    .limit(Math.min(limit, maxResults))
+                    .map(term -> new BookSuggestion(term.text, term.field, term.weight()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(Book book, boolean incremental) {
+        double valoracion = book.getValoracion() != null ? book.getValoracion() : 0;
+        List<Term> added = new ArrayList<>();
+        for (String[] field : new String[][]{{Consts.TITULO, book.getTitulo()}, {Consts.AUTOR, book.getAutor()}}) {
+            String text = field[1];
+            if (text == null || text.isBlank()) continue;
+            Term term = terms.get(field[0] + "|" + text);
+            if (term == null) {
+                term = new Term(text, field[0], keys(text));
+                terms.put(field[0] + "|" + text, term);
+                for (String key : term.keys) {
+                    Node node = root;
+                    for (int i = 0; i < key.length(); i++) {
+                        node = node.addChild(key.charAt(i));
+                    }
+                    node.terminals = append(node.terminals, term);
+                }
+            }
+            term.books.put(book.getId(), valoracion);
+            added.add(term);
+            if (incremental) refresh(term);
+        }
+        byBook.put(book.getId(), added);
+    }
+
+    private void removeBook(Long id) {
+        List<Term> previous = byBook.remove(id);
+        if (previous == null) return;
+        for (Term term : previous) {
+            term.books.remove(id);
+            if (term.books.isEmpty()) {
+                terms.remove(term.field + "|" + term.text);
+                for (String key : term.keys) {
+                    Node node = walk(key);
+                    if (node != null) node.terminals = without(node.terminals, term);
+                }
+            }
+            refresh(term);
+        }
+    }
+
+    /* Recalcula los mejores resultados de abajo arriba en las rutas del texto, podando los nodos vacios */
+    private void refresh(Term term) {
+        for (String key : term.keys) {
+            Node[] path = new Node[key.length() + 1];
+            path[0] = root;
+            int depth = 0;
+            while (depth < key.length() && path[depth] != null) {
+                path[depth + 1] = path[depth].child(key.charAt(depth));
+                depth++;
+            }
+            for (int i = depth; i >= 0; i--) {
+                Node node = path[i];
+                if (node == null) continue;
+                if (i > 0 && node.isEmpty()) {
+                    path[i - 1].removeChild(key.charAt(i - 1));
+                    continue;
+                }
+                node.top = best(node);
+            }
+        }
+    }
+
+    private void computeTop(Node node) {
+        for (Node child : node.children) {
+            computeTop(child);
+        }
+        node.top = best(node);
+    }
+
+    private Term[] best(Node node) {
+        Set<Term> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        candidates.addAll(Arrays.asList(node.terminals));
+        for (Node child : node.children) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        return candidates.stream().sorted(BY_WEIGHT).limit(maxResults).toArray(Term[]::new);
+    }
+
+    private Node walk(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    /* Claves del texto: desde el comienzo de cada palabra, acotadas a maxKeyLength */
+    private List<String> keys(String text) {
+        String normalized = normalize(text);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            if (Character.isLetterOrDigit(normalized.charAt(i)) && (i == 0 || !Character.isLetterOrDigit(normalized.charAt(i - 1)))) {
+                String key = normalized.substring(i, Math.min(normalized.length(), i + maxKeyLength));
+                if (!keys.contains(key)) keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static String normalize(String value) {
+        if (value == null) return "";
+        String decomposed = Normalizer.normalize(value.trim().toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("");
+    }
+
+    private static Term[] append(Term[] array, Term term) {
+        Term[] grown = Arrays.copyOf(array, array.length + 1);
+        grown[array.length] = term;
+        return grown;
+    }
+
+    private static Term[] without(Term[] array, Term term) {
+        return Arrays.stream(array).filter(candidate -> candidate != term).toArray(Term[]::new);
+    }
+}
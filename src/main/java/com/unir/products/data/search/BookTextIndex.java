@@ -0,0 +1,175 @@
+package com.unir.products.data.search;
+
+import com.unir.products.data.model.Book;
+import com.unir.products.data.utils.Consts;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/* Indice invertido de n-gramas sobre titulo, autor y editorial, los campos que admiten MATCH.
+   Resuelve las busquedas MATCH (lower(col) LIKE '%x%') intersectando las listas de
+   postings de los n-gramas del texto buscado y verificando despues cada candidato,
+   de modo que el coste depende de los postings y no del numero de filas. La sinopsis
+   solo se busca por relevancia (q), con BookFullTextIndex. */
+@Component
+@Slf4j
+public class BookTextIndex implements BookIndex {
+
+    public static final List<String> FIELDS = List.of(Consts.TITULO, Consts.AUTOR, Consts.EDITORIAL);
+
+    private final boolean enabled;
+    private final int gramSize;
+    private final int maxCandidates;
+
+    private final Map<String, Map<String, Set<Long>>> postings = new HashMap<>();
+    private final Map<Long, Map<String, String>> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //false hasta la primera reconstruccion: un indice vacio no puede responder por la tabla
+    private volatile boolean loaded;
+
+    public BookTextIndex(@Value("${catalogue.search.text-index.enabled:true}") boolean enabled,
+                         @Value("${catalogue.search.text-index.gram-size:3}") int gramSize,
+                         @Value("${catalogue.search.text-index.max-candidates:5000}") int maxCandidates) {
+        this.enabled = enabled;
+        this.gramSize = gramSize;
+        this.maxCandidates = maxCandidates;
+        FIELDS.forEach(field -> postings.put(field, new HashMap<>()));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void rebuild(Collection<Book> books) {
+        if (!enabled) return;
+        lock.writeLock().lock();
+        try {
+            postings.values().forEach(Map::clear);
+            documents.clear();
+            books.forEach(this::add);
+            loaded = true;
+            log.info("Indice de texto reconstruido con {} libros", documents.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void index(Book book) {
+        if (!enabled || book.getId() == null) return;
+        lock.writeLock().lock();
+        try {
+            removeDocument(book.getId());
+            add(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long id) {
+        if (!enabled || id == null) return;
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* Devuelve los ids cuyo campo contiene el texto (sin distinguir mayusculas), o null si
+       el indice no puede responder (desactivado, aun sin cargar o texto mas corto que el n-grama)
+       y hay que recurrir a la consulta LIKE. Tambien devuelve null si hay mas de max-candidates
+       ids: una lista IN tan larga cuesta mas que el LIKE y puede superar el maximo de parametros
+       de la sentencia (65535 en MySQL). */
+    public Set<Long> match(String field, String value) {
+        String text = normalize(value);
+        if (!enabled || !loaded || !postings.containsKey(field) || text.length() < gramSize) return null;
+
+        lock.readLock().lock();
+        try {
+            Map<String, Set<Long>> fieldPostings = postings.get(field);
+            List<Set<Long>> lists = new ArrayList<>();
+            for (String gram : grams(text)) {
+                Set<Long> ids = fieldPostings.get(gram);
+                if (ids == null) return Set.of();
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(Set::size));
+
+            Set<Long> result = new HashSet<>();
+            for (Long id : lists.getFirst()) {
+                if (containsAll(lists, id) && documents.get(id).get(field).contains(text)) {
+                    result.add(id);
+                    if (result.size() > maxCandidates) return null;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(Book book) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(Consts.TITULO, normalize(book.getTitulo()));
+        fields.put(Consts.AUTOR, normalize(book.getAutor()));
+        fields.put(Consts.EDITORIAL, normalize(book.getEditorial()));
+        documents.put(book.getId(), fields);
+
+        fields.forEach((field, text) -> {
+            Map<String, Set<Long>> fieldPostings = postings.get(field);
+            for (String gram : grams(text)) {
+                fieldPostings.computeIfAbsent(gram, g -> new HashSet<>()).add(book.getId());
+            }
+        });
+    }
+
+    private void removeDocument(Long id) {
+        Map<String, String> fields = documents.remove(id);
+        if (fields == null) return;
+
+        fields.forEach((field, text) -> {
+            Map<String, Set<Long>> fieldPostings = postings.get(field);
+            for (String gram : grams(text)) {
+                Set<Long> ids = fieldPostings.get(gram);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    fieldPostings.remove(gram);
+                }
+            }
+        });
+    }
+
+    private Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + gramSize <= text.length(); i++) {
+            grams.add(text.substring(i, i + gramSize));
+        }
+        return grams;
+    }
+
+    private static boolean containsAll(List<Set<Long>> lists, Long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) return false;
+        }
+        return true;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+}
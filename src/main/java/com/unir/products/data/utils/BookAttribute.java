@@ -0,0 +1,78 @@
+package com.unir.products.data.utils;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/* Metamodelo de los campos de Book: para cada clave de Consts, el atributo JPA y su tipo Java.
+   Los valores de busqueda se convierten una sola vez a ese tipo, de modo que cada filtro se
+   enlaza con su tipo nativo (sin CAST ni comparaciones de texto) y puede usar los indices. */
+@Getter
+public enum BookAttribute {
+
+    ID(Consts.ID, "id", Long.class),
+    TITULO(Consts.TITULO, "titulo", String.class),
+    AUTOR(Consts.AUTOR, "autor", String.class),
+    FECHA_DE_PUBLICACION(Consts.FECHA_DE_PUBLICACION, "fecha_de_publicacion", LocalDate.class),
+    EDITORIAL(Consts.EDITORIAL, "editorial", String.class),
+    CATEGORIA(Consts.CATEGORIA, "categoria", String.class),
+    ISBN(Consts.ISBN, "isbn", String.class),
+    PORTADA(Consts.PORTADA, "portada", String.class),
+    SINOPSIS(Consts.SINOPSIS, "sinopsis", String.class),
+    VALORACION(Consts.VALORACION, "valoracion", Double.class),
+    VISIBLE(Consts.VISIBLE, "visible", Boolean.class),
+    STOCK(Consts.STOCK, "stock", Integer.class),
+    PRECIO(Consts.PRECIO, "precio", Double.class);
+
+    private static final Map<String, BookAttribute> BY_KEY = new HashMap<>();
+
+    static {
+        for (BookAttribute attribute : values()) {
+            BY_KEY.put(attribute.key, attribute);
+        }
+    }
+
+    private final String key;
+    private final String property;
+    private final Class<?> javaType;
+
+    BookAttribute(String key, String property, Class<?> javaType) {
+        this.key = key;
+        this.property = property;
+        this.javaType = javaType;
+    }
+
+    public static BookAttribute fromKey(String key) {
+        BookAttribute attribute = BY_KEY.get(key);
+        if (attribute == null) {
+            throw new IllegalArgumentException("Campo de busqueda desconocido: " + key);
+        }
+        return attribute;
+    }
+
+    /* Convierte el valor (o cada elemento, si es una coleccion) al tipo Java del atributo */
+    public Object coerce(Object value) {
+        if (value == null || javaType.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Collection<?> values) {
+            return values.stream().map(this::coerce).toList();
+        }
+        if (value instanceof Number number) {
+            if (javaType == Double.class) return number.doubleValue();
+            if (javaType == Integer.class) return number.intValue();
+            if (javaType == Long.class) return number.longValue();
+        }
+        if (value instanceof String text) {
+            if (javaType == Double.class) return Double.valueOf(text);
+            if (javaType == Integer.class) return Integer.valueOf(text);
+            if (javaType == Long.class) return Long.valueOf(text);
+            if (javaType == Boolean.class) return Boolean.valueOf(text);
+            if (javaType == LocalDate.class) return LocalDate.parse(text);
+        }
+        throw new IllegalArgumentException("Valor " + value + " no compatible con el campo " + key);
+    }
+}
@@ -0,0 +1,79 @@
+package com.unir.products.data.utils;
+
+import com.unir.products.data.model.Book;
+import com.unir.products.data.model.BookSummary;
+import jakarta.persistence.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/* Cursor opaco para la paginacion por clave (keyset): guarda el orden, el valor de la columna
+   de ordenacion y el id de la ultima fila devuelta. La siguiente pagina continua a partir de
+   esa fila con un predicado sobre indices, sin el coste creciente de un OFFSET. */
+public record BookCursor(BookSort sort, Object value, Long id) {
+
+    private static final String SEPARATOR = "\n";
+
+    public static BookCursor after(BookSort sort, Book last) {
+        return new BookCursor(sort, sort.valueOf(last), last.getId());
+    }
+
+    public static BookCursor after(BookSort sort, BookSummary last) {
+        return new BookCursor(sort, sort.valueOf(last), last.getId());
+    }
+
+    public String encode() {
+        String payload = sort + SEPARATOR + id + SEPARATOR + (value == null ? "" : "=" + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookCursor decode(String cursor, BookSort sort) {
+        try {
+            String payload = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = payload.split(SEPARATOR, 3);
+            if (parts.length != 3 || !parts[0].equals(sort.toString())) {
+                throw new IllegalArgumentException("El cursor no corresponde a la ordenacion solicitada");
+            }
+            Long id = Long.valueOf(parts[1]);
+            Object value = parts[2].isEmpty() ? null : sort.bookAttribute().coerce(parts[2].substring(1));
+            return new BookCursor(sort, sort.byId() ? id : value, id);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor no valido", e);
+        }
+    }
+
+    /* Parte de la forma de la consulta: con o sin valor de la columna de ordenacion */
+    public String shape() {
+        return value == null ? "null" : "value";
+    }
+
+    /* (col > v) OR (col = v AND id > k), invirtiendo los operadores si el orden es descendente.
+       Los nulos ordenan como el valor mas bajo (ver BookSort): van antes que cualquier valor en
+       ascendente y despues de todos en descendente. */
+    public String toJpql(String alias) {
+        String id = alias + "." + BookAttribute.ID.getProperty();
+        String comparison = sort.descending() ? " < " : " > ";
+        String afterId = id + comparison + ":cursorId";
+        if (sort.byId()) {
+            return afterId;
+        }
+
+        String column = alias + "." + sort.bookAttribute().getProperty();
+        if (value == null) {
+            return sort.descending()
+                    ? "(" + column + " is null and " + afterId + ")"
+                    : "(" + column + " is null and " + afterId + " or " + column + " is not null)";
+        }
+        return "(" + column + comparison + ":cursorValue"
+                + " or (" + column + " = :cursorValue and " + afterId + ")"
+                + (sort.descending() ? " or " + column + " is null)" : ")");
+    }
+
+    public void bind(Query query) {
+        query.setParameter("cursorId", id);
+        if (!sort.byId() && value != null) {
+            query.setParameter("cursorValue", value);
+        }
+    }
+}
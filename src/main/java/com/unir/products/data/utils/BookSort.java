@@ -0,0 +1,77 @@
+package com.unir.products.data.utils;
+
+import com.unir.products.data.model.Book;
+import com.unir.products.data.model.BookSummary;
+
+import java.util.Set;
+
+/* Orden de los listados: una columna (ascendente o descendente con el prefijo "-") desempatada por id.
+   El ORDER BY es solo "col, id" para que la base de datos recorra el indice de la columna en orden
+   en lugar de ordenar todo el conjunto filtrado. Los nulos quedan donde los pone MySQL (y H2 en modo
+   MySQL): como el valor mas bajo, al principio en ascendente y al final en descendente. */
+public record BookSort(String attribute, boolean descending) {
+
+    public static final BookSort DEFAULT = new BookSort(Consts.ID, false);
+
+    private static final Set<String> SORTABLE = Set.of(
+            Consts.ID, Consts.TITULO, Consts.PRECIO, Consts.VALORACION, Consts.FECHA_DE_PUBLICACION);
+
+    public static BookSort parse(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return DEFAULT;
+        }
+        String value = sort.trim();
+        boolean descending = value.startsWith("-");
+        String attribute = descending ? value.substring(1) : value;
+        if (!SORTABLE.contains(attribute)) {
+            throw new IllegalArgumentException("Campo de ordenacion no soportado: " + attribute);
+        }
+        return new BookSort(attribute, descending);
+    }
+
+    public BookAttribute bookAttribute() {
+        return BookAttribute.fromKey(attribute);
+    }
+
+    public Class<?> javaType() {
+        return bookAttribute().getJavaType();
+    }
+
+    public boolean byId() {
+        return Consts.ID.equals(attribute);
+    }
+
+    public Object valueOf(Book book) {
+        return switch (attribute) {
+            case Consts.TITULO -> book.getTitulo();
+            case Consts.PRECIO -> book.getPrecio();
+            case Consts.VALORACION -> book.getValoracion();
+            case Consts.FECHA_DE_PUBLICACION -> book.getFecha_de_publicacion();
+            default -> book.getId();
+        };
+    }
+
+    public Object valueOf(BookSummary book) {
+        return switch (attribute) {
+            case Consts.TITULO -> book.getTitulo();
+            case Consts.PRECIO -> book.getPrecio();
+            case Consts.VALORACION -> book.getValoracion();
+            case Consts.FECHA_DE_PUBLICACION -> book.getFecha_de_publicacion();
+            default -> book.getId();
+        };
+    }
+
+    public String toJpql(String alias) {
+        String id = alias + "." + BookAttribute.ID.getProperty();
+        String direction = descending ? " desc" : " asc";
+        if (byId()) {
+            return "order by " + id + direction;
+        }
+        return "order by " + alias + "." + bookAttribute().getProperty() + direction + ", " + id + direction;
+    }
+
+    @Override
+    public String toString() {
+        return descending ? "-" + attribute : attribute;
+    }
+}
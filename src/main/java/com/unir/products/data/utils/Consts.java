@@ -3,6 +3,7 @@ package com.unir.products.data.utils;
 public class Consts {
 
     //Constants for db entity fields
+    public static final String ID = "id";
     public static final String TITULO = "titulo";
     public static final String AUTOR = "autor";
     public static final String FECHA_DE_PUBLICACION = "fecha_de_publicacion";
@@ -15,5 +16,6 @@ public class Consts {
     public static final String VISIBLE = "visible";
     public static final String STOCK = "stock";
     public static final String PRECIO = "precio";
+    public static final String VERSION = "version";
       
 }
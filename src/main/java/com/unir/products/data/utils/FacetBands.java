@@ -0,0 +1,40 @@
+package com.unir.products.data.utils;
+
+/* Tramos de un facet numerico: [0, e0), [e0, e1), ..., [en, +inf). Los valores nulos no caen en ningun tramo. */
+public record FacetBands(double... edges) {
+
+    public static final FacetBands PRECIO = new FacetBands(10, 20, 30, 50);
+    public static final FacetBands VALORACION = new FacetBands(1, 2, 3, 4);
+
+    public int size() {
+        return edges.length + 1;
+    }
+
+    /* Expresion JPQL con el indice del tramo de cada fila */
+    public String toJpql(String path) {
+        StringBuilder jpql = new StringBuilder("case when ").append(path).append(" is null then null");
+        for (int i = 0; i < edges.length; i++) {
+            jpql.append(" when ").append(path).append(" < ").append(edges[i]).append(" then ").append(i);
+        }
+        return jpql.append(" else ").append(edges.length).append(" end").toString();
+    }
+
+    /* Indice del tramo que contiene el valor */
+    public int band(double value) {
+        for (int i = 0; i < edges.length; i++) {
+            if (value < edges[i]) return i;
+        }
+        return edges.length;
+    }
+
+    public String label(int band) {
+        if (band == edges.length) {
+            return format(edges[band - 1]) + "+";
+        }
+        return format(band == 0 ? 0 : edges[band - 1]) + "-" + format(edges[band]);
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+}
@@ -1,68 +1,50 @@
 package com.unir.products.data.utils;
 
-import jakarta.persistence.criteria.CriteriaBuilder;
-import jakarta.persistence.criteria.CriteriaQuery;
-import jakarta.persistence.criteria.Predicate;
-import jakarta.persistence.criteria.Root;
-import org.springframework.data.jpa.domain.Specification;
+import jakarta.persistence.Query;
 
-import java.time.LocalDate; // Asegúrate de tener este import
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.StringJoiner;
 
-public class SearchCriteria<Product> implements Specification<Product> {
+/* Condiciones de una busqueda. Se traducen solo a JPQL (toJpql/bind): es la unica definicion de su
+   semantica, compartida por los listados, la busqueda por relevancia y los facets. */
+public class SearchCriteria<Product> {
 
-    private final List<SearchStatement> list = new LinkedList<>();
+    private final List<SearchStatement> list = new ArrayList<>();
 
     public void add(SearchStatement criteria) {
         list.add(criteria);
     }
 
-    @Override
-    public Predicate toPredicate(Root<Product> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
+    public boolean isEmpty() {
+        return list.isEmpty();
+    }
 
-        List<Predicate> predicates = new LinkedList<>();
+    /* "Forma" de la busqueda: que campos se filtran y con que operacion, sin los valores.
+       Dos busquedas con la misma forma comparten la misma consulta JPQL y solo cambian los parametros. */
+    public String shape() {
+        StringJoiner shape = new StringJoiner(",");
         for (SearchStatement criteria : list) {
-            if (criteria.getOperation().equals(SearchOperation.GREATER_THAN)) {
-                predicates.add(builder.greaterThan(
-                        root.get(criteria.getKey()), criteria.getValue().toString()));
-            } else if (criteria.getOperation().equals(SearchOperation.LESS_THAN)) {
-                predicates.add(builder.lessThan(
-                        root.get(criteria.getKey()), criteria.getValue().toString()));
-            } else if (criteria.getOperation().equals(SearchOperation.GREATER_THAN_EQUAL)) {
-                if (criteria.getValue() instanceof LocalDate) { //Si el valor es LocalDate
-                    predicates.add(builder.greaterThanOrEqualTo(
-                            root.get(criteria.getKey()).as(LocalDate.class),
-                            (LocalDate) criteria.getValue()));
-                } else {
-                    predicates.add(builder.greaterThanOrEqualTo(
-                            root.get(criteria.getKey()), criteria.getValue().toString()));
-                }
-            } else if (criteria.getOperation().equals(SearchOperation.LESS_THAN_EQUAL)) {
-                if (criteria.getValue() instanceof LocalDate) { //Si el valor es LocalDate
-                    predicates.add(builder.lessThanOrEqualTo(
-                            root.get(criteria.getKey()).as(LocalDate.class),
-                            (LocalDate) criteria.getValue()));
-                } else {
-                    predicates.add(builder.lessThanOrEqualTo(
-                            root.get(criteria.getKey()), criteria.getValue().toString()));
-                }
-            } else if (criteria.getOperation().equals(SearchOperation.NOT_EQUAL)) {
-                predicates.add(builder.notEqual(
-                        root.get(criteria.getKey()), criteria.getValue()));
-            } else if (criteria.getOperation().equals(SearchOperation.EQUAL)) {
-                predicates.add(builder.equal(
-                        root.get(criteria.getKey()), criteria.getValue()));
-            } else if (criteria.getOperation().equals(SearchOperation.MATCH)) {
-                predicates.add(builder.like(
-                        builder.lower(root.get(criteria.getKey())),
-                        "%" + criteria.getValue().toString().toLowerCase() + "%"));
-            } else if (criteria.getOperation().equals(SearchOperation.MATCH_END)) {
-                predicates.add(builder.like(
-                        builder.lower(root.get(criteria.getKey())),
-                        criteria.getValue().toString().toLowerCase() + "%"));
-            }
+            shape.add(criteria.getAttribute().name() + ":" + criteria.getOperation());
         }
-        return builder.and(predicates.toArray(new Predicate[0]));
+        return shape.toString();
+    }
+
+    public String toJpql(String alias) {
+        StringJoiner jpql = new StringJoiner(" and ");
+        for (int i = 0; i < list.size(); i++) {
+            jpql.add(list.get(i).toJpql(alias, parameter(i)));
+        }
+        return jpql.toString();
+    }
+
+    public void bind(Query query) {
+        for (int i = 0; i < list.size(); i++) {
+            query.setParameter(parameter(i), list.get(i).getParameterValue());
+        }
+    }
+
+    private static String parameter(int index) {
+        return "p" + index;
     }
-}
\ No newline at end of file
+}
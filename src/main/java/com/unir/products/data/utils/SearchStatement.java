@@ -1,15 +1,46 @@
 package com.unir.products.data.utils;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
 
-@AllArgsConstructor
 @Getter
-@Setter
 public class SearchStatement {
 
-    private String key;
-    private Object value;
-    private SearchOperation operation;
+    private final String key;
+    private final Object value;
+    private final SearchOperation operation;
+    private final BookAttribute attribute;
+
+    public SearchStatement(String key, Object value, SearchOperation operation) {
+        this.key = key;
+        this.operation = operation;
+        this.attribute = BookAttribute.fromKey(key);
+        //MATCH trabaja siempre sobre texto; el resto se enlaza con el tipo de la columna
+        this.value = operation == SearchOperation.MATCH || operation == SearchOperation.MATCH_END
+                ? value.toString()
+                : attribute.coerce(value);
+    }
+
+    /* Valor que se enlaza como parametro de la consulta: los MATCH llevan los comodines del LIKE */
+    public Object getParameterValue() {
+        return switch (operation) {
+            case MATCH -> "%" + value.toString().toLowerCase() + "%";
+            case MATCH_END -> value.toString().toLowerCase() + "%";
+            default -> value;
+        };
+    }
+
+    /* Condicion JPQL equivalente, con el valor como parametro con nombre */
+    public String toJpql(String alias, String parameter) {
+        String path = alias + "." + attribute.getProperty();
+        return switch (operation) {
+            case GREATER_THAN -> path + " > :" + parameter;
+            case LESS_THAN -> path + " < :" + parameter;
+            case GREATER_THAN_EQUAL -> path + " >= :" + parameter;
+            case LESS_THAN_EQUAL -> path + " <= :" + parameter;
+            case NOT_EQUAL -> path + " <> :" + parameter;
+            case EQUAL -> path + " = :" + parameter;
+            case MATCH, MATCH_END -> "lower(" + path + ") like :" + parameter;
+            case IN -> path + " in :" + parameter;
+        };
+    }
 }
@@ -1,27 +1,74 @@
 package com.unir.products.service;
 
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import com.unir.products.controller.model.CreateBookRequest;
+import com.unir.products.controller.model.StockReservationItem;
 import com.unir.products.controller.model.BookSearchCriteria;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.unir.products.data.model.Book;
+import com.unir.products.data.model.BookChange;
+import com.unir.products.data.model.BookSuggestion;
+import com.unir.products.data.model.BookSummary;
+import com.unir.products.data.model.CatalogueVersion;
+import com.unir.products.controller.model.BookBatchRequest;
+import com.unir.products.controller.model.BookBatchResponse;
+import com.unir.products.controller.model.BookChangesDto;
 import com.unir.products.controller.model.BookDto;
+import com.unir.products.controller.model.BookFacetsDto;
+import com.unir.products.controller.model.BulkBookResult;
+import com.unir.products.controller.model.CacheStatsDto;
 import com.unir.products.controller.model.CreateBookRequest;
 
 public interface BooksService {
 
 	List<Book> getBooks(BookSearchCriteria criteria);
+
+	List<BookSummary> getBookSummaries(BookSearchCriteria criteria);
+
+	BookFacetsDto getFacets(BookSearchCriteria criteria);
+
+	List<BookSuggestion> getSuggestions(String prefix, int limit);
 	Book getBook(String bookId);
+
+	BookBatchResponse getBooks(BookBatchRequest request);
 	
 	Boolean removeBook(String bookId);
 	
 	ArrayList<Object> createBook(CreateBookRequest request);
 
-	Book updateBook(String bookId, String updateRequest);
+	List<BulkBookResult> createBooks(InputStream body, boolean upsert) throws IOException;
+
+	default Book updateBook(String bookId, String updateRequest) {
+		return updateBook(bookId, updateRequest, null);
+	}
+
+	//expectedVersion: version indicada en If-Match (null = cualquiera)
+	Book updateBook(String bookId, String updateRequest, Long expectedVersion);
+
+	default Book updateBook(String bookId, BookDto updateRequest) {
+		return updateBook(bookId, updateRequest, null);
+	}
+
+	Book updateBook(String bookId, BookDto updateRequest, Long expectedVersion);
+
+	List<StockReservationItem> reserveStock(List<StockReservationItem> items);
+
+	CacheStatsDto getCacheStats();
+
+	CatalogueVersion getCatalogueVersion();
+
+	//null si la secuencia ya no esta disponible o pertenece a otro arranque (bootId)
+	BookChangesDto getChanges(String bootId, Long since, int limit);
+
+	Runnable subscribeChanges(String bootId, Long since, Consumer<BookChange> listener);
 
-	Book updateBook(String bookId, BookDto updateRequest);
+	void exportBooks(OutputStream out) throws IOException;
 
 }
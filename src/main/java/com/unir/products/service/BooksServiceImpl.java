@@ -1,32 +1,77 @@
 package com.unir.products.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 
 import com.unir.products.controller.model.ResponseCodes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import com.unir.products.controller.model.BookSearchCriteria;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.fge.jsonpatch.JsonPatchException;
-import com.github.fge.jsonpatch.mergepatch.JsonMergePatch;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.unir.products.config.CachedBookSerializer;
+import com.unir.products.config.ReplicaDataSource;
+import com.unir.products.controller.model.BookBatchRequest;
+import com.unir.products.controller.model.BookBatchResponse;
+import com.unir.products.controller.model.BookChangesDto;
 import com.unir.products.controller.model.BookDto;
+import com.unir.products.controller.model.BookFacetsDto;
+import com.unir.products.controller.model.BulkBookResult;
+import com.unir.products.controller.model.CacheStatsDto;
 import com.unir.products.controller.model.CreateBookRequest;
+import com.unir.products.controller.model.StockReservationItem;
 import com.unir.products.data.BookRepository;
 import com.unir.products.data.model.Book;
+import com.unir.products.data.model.BookChange;
+import com.unir.products.data.model.BookSuggestion;
+import com.unir.products.data.model.BookSummary;
+import com.unir.products.data.model.CatalogueVersion;
+import com.unir.products.data.model.FacetRow;
+import com.unir.products.data.utils.Consts;
+import com.unir.products.data.utils.FacetBands;
+import com.unir.products.data.cache.SearchResultCache;
+import com.unir.products.service.utils.BookMergePatcher;
+import com.unir.products.service.utils.BookSearchKey;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.val;
+import org.hibernate.exception.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 
 import static com.unir.products.service.utils.BookSearchUtils.criteriaAreNotEmpty;
 
 @Service
 @Slf4j
+@Timed(value = "catalogue.service", histogram = true)
 public class BooksServiceImpl implements BooksService {
 
 	@Autowired
@@ -35,25 +80,197 @@ public class BooksServiceImpl implements BooksService {
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private BookMergePatcher bookMergePatcher;
+
+	@Autowired
+	private SearchResultCache searchCache;
+
+	@Value("${catalogue.export.flush-every:500}")
+	private int exportFlushEvery;
+
+	@Value("${catalogue.bulk.chunk-size:500}")
+	private int bulkChunkSize;
+
+	@Value("${catalogue.batch.max-items:500}")
+	private int batchMaxItems;
+
+	@Value("${catalogue.facets.max-editoriales:20}")
+	private int facetsMaxEditoriales;
+
+	//Lecturas con readOnly: con replicas (catalogue.datasource.routing) se atienden fuera del primario
 	@Override
+	@Transactional(readOnly = true)
 	public List<Book> getBooks(BookSearchCriteria criteria) {
+		//Sin filtros tambien se pasa por search para respetar el limite de pagina y el cursor
+		List<Book> books = cachedSearch("full", criteria, repository::search);
 		if (criteriaAreNotEmpty(criteria)) {
-			return repository.search(criteria);
+			return books;
 		}
-
-		List<Book> books = repository.getBooks();
 		return books.isEmpty() ? null : books;
 	}
 
 	@Override
+	@Transactional(readOnly = true)
+	public List<BookSummary> getBookSummaries(BookSearchCriteria criteria) {
+		return cachedSearch("summary", criteria, repository::searchSummaries);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public BookFacetsDto getFacets(BookSearchCriteria criteria) {
+		//Los facets no dependen de la pagina: se descartan limite, cursor y orden en una copia de los criterios
+		BookSearchCriteria unpaged = criteria.toBuilder()
+				.limit(null)
+				.cursor(null)
+				.sort(null)
+				.build();
+		List<BookFacetsDto> facets = cachedSearch("facets", unpaged,
+				c -> List.of(toFacets(repository.facets(c, facetsMaxEditoriales), facetsMaxEditoriales)));
+		return facets.isEmpty() ? toFacets(List.of(), facetsMaxEditoriales) : facets.getFirst();
+	}
+
+	@Override
+	public List<BookSuggestion> getSuggestions(String prefix, int limit) {
+		return repository.suggest(prefix, limit);
+	}
+
+	private static BookFacetsDto toFacets(List<FacetRow> rows, int maxEditoriales) {
+		Map<String, Long> categorias = new HashMap<>();
+		Map<String, Long> editoriales = new HashMap<>();
+		long[] precios = new long[FacetBands.PRECIO.size()];
+		long[] valoraciones = new long[FacetBands.VALORACION.size()];
+		long total = 0;
+		long conStock = 0;
+
+		for (FacetRow row : rows) {
+			long count = row.total();
+			switch (row.facet()) {
+				case FacetRow.TOTAL -> total = count;
+				case FacetRow.CON_STOCK -> conStock = count;
+				//los libros sin valor en un campo no cuentan en su facet
+				default -> {
+					if (row.value() == null) {
+						continue;
+					}
+					switch (row.facet()) {
+						case Consts.CATEGORIA -> categorias.put((String) row.value(), count);
+						case Consts.EDITORIAL -> editoriales.put((String) row.value(), count);
+						case Consts.PRECIO -> precios[((Number) row.value()).intValue()] = count;
+						case Consts.VALORACION -> valoraciones[((Number) row.value()).intValue()] = count;
+						default -> log.warn("Facet desconocido: {}", row.facet());
+					}
+				}
+			}
+		}
+
+		return BookFacetsDto.builder()
+				.total(total)
+				.categorias(byCount(categorias, Integer.MAX_VALUE))
+				.editoriales(byCount(editoriales, maxEditoriales))
+				.precios(byBand(FacetBands.PRECIO, precios))
+				.valoraciones(byBand(FacetBands.VALORACION, valoraciones))
+				.conStock(conStock)
+				.build();
+	}
+
+	//Valores mas frecuentes primero, como mucho max
+	private static Map<String, Long> byCount(Map<String, Long> counts, int max) {
+		Map<String, Long> sorted = new LinkedHashMap<>();
+		counts.entrySet().stream()
+				.sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+				.limit(max)
+				.forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+		return sorted;
+	}
+
+	//Todos los tramos en orden, tambien los vacios
+	private static Map<String, Long> byBand(FacetBands bands, long[] counts) {
+		Map<String, Long> sorted = new LinkedHashMap<>();
+		for (int band = 0; band < counts.length; band++) {
+			sorted.put(bands.label(band), counts[band]);
+		}
+		return sorted;
+	}
+
+	/* Las busquedas repetidas (mismos filtros normalizados, misma pagina y misma epoca del catalogo)
+	   se sirven desde memoria. La epoca se lee antes de consultar: un resultado nunca se guarda
+	   bajo una epoca posterior a la de los datos que contiene. Tampoco se guardan las busquedas
+	   atendidas por una replica, y las peticiones fijadas al primario no usan la cache */
+	private <T> List<T> cachedSearch(String view, BookSearchCriteria criteria, Function<BookSearchCriteria, List<T>> search) {
+		long epoch = repository.catalogueVersion().epoch();
+		BookSearchKey key = BookSearchKey.of(epoch, view, criteria);
+		if (key.emptyRange()) {
+			return List.of();
+		}
+		if (ReplicaDataSource.isPinnedToPrimary()) {
+			return search.apply(criteria);
+		}
+		return searchCache.get(epoch, key, () -> search.apply(criteria), ReplicaDataSource::readFromReplica);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
 	public Book getBook(String bookId) {
 		return repository.getById(Long.valueOf(bookId));
 	}
 
+	/* Consulta por lotes: una consulta IN para los ids que no estan en cache y otra para los ISBN */
 	@Override
+	@Transactional(readOnly = true)
+	public BookBatchResponse getBooks(BookBatchRequest request) {
+		Set<Long> ids = new LinkedHashSet<>(request.getIds() != null ? request.getIds() : List.of());
+		Set<String> isbns = new LinkedHashSet<>(request.getIsbns() != null ? request.getIsbns() : List.of());
+		ids.remove(null);
+		isbns.removeIf(isbn -> !StringUtils.hasText(isbn));
+		if (ids.size() + isbns.size() > batchMaxItems) {
+			throw new IllegalArgumentException("Como maximo " + batchMaxItems + " ids e ISBN por peticion");
+		}
+
+		Map<Long, Book> found = ids.isEmpty() ? Map.of() : repository.getByIds(ids);
+		Map<Long, Book> books = new LinkedHashMap<>();
+		List<Long> missingIds = new ArrayList<>();
+		for (Long id : ids) {
+			Book book = found.get(id);
+			if (book != null) {
+				books.put(id, book);
+			} else {
+				missingIds.add(id);
+			}
+		}
+
+		Map<String, Long> isbnIds = new LinkedHashMap<>();
+		List<String> missingIsbns = new ArrayList<>();
+		if (!isbns.isEmpty()) {
+			Map<String, Book> byIsbn = new HashMap<>();
+			repository.getByIsbns(isbns).forEach(book -> byIsbn.put(book.getIsbn(), book));
+			for (String isbn : isbns) {
+				Book book = byIsbn.get(isbn);
+				if (book != null) {
+					isbnIds.put(isbn, book.getId());
+					books.putIfAbsent(book.getId(), book);
+				} else {
+					missingIsbns.add(isbn);
+				}
+			}
+		}
+
+		return BookBatchResponse.builder()
+				.books(books)
+				.isbns(isbnIds)
+				.missingIds(missingIds)
+				.missingIsbns(missingIsbns)
+				.build();
+	}
+
+	@Override
+	@Transactional
 	public Boolean removeBook(String bookId) {
 
-		Book book = repository.getById(Long.valueOf(bookId));
+		Book book = repository.getByIdForUpdate(Long.valueOf(bookId));
 
 		if (book != null) {
 			repository.delete(book);
@@ -64,41 +281,19 @@ public class BooksServiceImpl implements BooksService {
 	}
 
 	@Override
+	@Transactional
 	public ArrayList<Object> createBook(CreateBookRequest request) {
 		
 		ArrayList<Object> response = new ArrayList<Object>();
 
 		//Otra opcion: Jakarta Validation: https://www.baeldung.com/java-validation
-		if (request != null && StringUtils.hasLength(request.getTitulo().trim())
-				&& StringUtils.hasLength(request.getAutor().trim())
-				&& request.getFecha_de_publicacion() != null
-				&& StringUtils.hasLength(request.getEditorial().trim()) 
-				&& StringUtils.hasLength(request.getCategoria().trim()) 
-				&& request.getIsbn() != null 
-				&& StringUtils.hasLength(request.getPortada().trim()) 
-				&& StringUtils.hasLength(request.getSinopsis().trim())  
-				&& request.getVisible() != null
-				&& request.getStock() != null
-				&& request.getPrecio() != null) {
+		if (isValid(request)) {
 			
 			
 			//No se encuentra el libro con ISBN
 			if(repository.getByIsbn(request.getIsbn()) == null) {
 				
-				Book book = Book.builder()
-						.titulo(request.getTitulo())
-						.autor(request.getAutor())
-/* 						.fechaDePublicacion(request.getFechaDePublicacion()) */
- 						.fecha_de_publicacion(request.getFecha_de_publicacion())
-						.editorial(request.getEditorial())
-						.categoria(request.getCategoria())
-						.isbn(request.getIsbn())
-						.portada(request.getPortada())
-						.sinopsis(request.getSinopsis())
-						.stock(request.getStock())
-						.visible(request.getVisible())
-						.precio(request.getPrecio())
-						.build();
+				Book book = toBook(request);
 				
 				
 				response.add(repository.save(book));
@@ -121,18 +316,206 @@ public class BooksServiceImpl implements BooksService {
 	}
 
 	@Override
-	public Book updateBook(String bookId, String request) {
+	public List<BulkBookResult> createBooks(InputStream body, boolean upsert) throws IOException {
+
+		//El cuerpo puede ser un array JSON o NDJSON: MappingIterator recorre ambos sin cargarlos enteros
+		List<BulkBookResult> results = new ArrayList<>();
+		Set<String> seenIsbns = new HashSet<>();
+		List<CreateBookRequest> chunk = new ArrayList<>(bulkChunkSize);
+
+		try (MappingIterator<JsonNode> nodes = objectMapper.readerFor(JsonNode.class).readValues(body)) {
+			while (true) {
+				JsonNode node;
+				try {
+					if (!nodes.hasNextValue()) {
+						break;
+					}
+					node = nodes.nextValue();
+				} catch (IOException e) {
+					//JSON mal formado: no se puede seguir leyendo. Se guarda lo leido hasta aqui y se
+					//marca la posicion del error; los libros posteriores no se procesan
+					log.warn("Carga masiva interrumpida en el libro {}: {}", results.size() + chunk.size(), e.getMessage());
+					if (!chunk.isEmpty()) {
+						results.addAll(createChunk(chunk, results.size(), seenIsbns, upsert));
+					}
+					results.add(BulkBookResult.builder().index(results.size()).code(ResponseCodes.MALFORMED).build());
+					return results;
+				}
+				//Un elemento con tipos incorrectos solo invalida ese libro (null -> BAD_REQUEST en createChunk)
+				chunk.add(toCreateBookRequest(node));
+				if (chunk.size() == bulkChunkSize) {
+					results.addAll(createChunk(chunk, results.size(), seenIsbns, upsert));
+					chunk.clear();
+				}
+			}
+		}
+		if (!chunk.isEmpty()) {
+			results.addAll(createChunk(chunk, results.size(), seenIsbns, upsert));
+		}
+		return results;
+	}
+
+	private CreateBookRequest toCreateBookRequest(JsonNode node) {
+		try {
+			return objectMapper.treeToValue(node, CreateBookRequest.class);
+		} catch (JsonProcessingException | IllegalArgumentException e) {
+			log.debug("Libro no valido en la carga masiva: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	/* Un bloque = una transaccion, una sola consulta de ISBNs existentes y los INSERT/UPDATE en lotes JDBC */
+	private List<BulkBookResult> createChunk(List<CreateBookRequest> chunk, int offset, Set<String> seenIsbns, boolean upsert) {
+		Set<String> seenBefore = new HashSet<>(seenIsbns);
+		try {
+			return transactionTemplate.execute(status -> {
+				Set<String> isbns = new HashSet<>();
+				chunk.stream().filter(this::isValid).forEach(request -> isbns.add(request.getIsbn()));
+				Map<String, Book> existing = new HashMap<>();
+				if (!isbns.isEmpty()) {
+					repository.getByIsbns(isbns).forEach(book -> existing.put(book.getIsbn(), book));
+				}
+
+				List<BulkBookResult> results = new ArrayList<>(chunk.size());
+				List<Book> toSave = new ArrayList<>();
+				Map<Book, BulkBookResult> pending = new HashMap<>();
+				for (int i = 0; i < chunk.size(); i++) {
+					CreateBookRequest request = chunk.get(i);
+					BulkBookResult result = BulkBookResult.builder().index(offset + i)
+							.isbn(request != null ? request.getIsbn() : null).build();
+					results.add(result);
+
+					if (!isValid(request)) {
+						result.setCode(ResponseCodes.BAD_REQUEST);
+					} else if (!seenIsbns.add(request.getIsbn())) {
+						//ISBN repetido dentro de la propia peticion
+						result.setCode(ResponseCodes.DUPLICATE);
+					} else if (existing.containsKey(request.getIsbn())) {
+						if (upsert) {
+							Book book = existing.get(request.getIsbn());
+							if (book.update(toBookDto(request))) {
+								toSave.add(book);
+								pending.put(book, result);
+							} else {
+								result.setCode(ResponseCodes.OK);
+								result.setId(book.getId());
+							}
+						} else {
+							result.setCode(ResponseCodes.DUPLICATE);
+							result.setId(existing.get(request.getIsbn()).getId());
+						}
+					} else {
+						Book book = toBook(request);
+						toSave.add(book);
+						pending.put(book, result);
+					}
+				}
+
+				repository.saveAll(toSave).forEach(book -> {
+					BulkBookResult result = pending.get(book);
+					result.setId(book.getId());
+					result.setCode(ResponseCodes.OK);
+				});
+				repository.clear();
+				return results;
+			});
+		} catch (DataIntegrityViolationException e) {
+			//Algun libro del bloque viola una restriccion (p.ej. titulo repetido): se reintenta libro a libro
+			seenIsbns.clear();
+			seenIsbns.addAll(seenBefore);
+			if (chunk.size() == 1) {
+				log.warn("Libro {} rechazado en la carga masiva: {}", offset, e.getMostSpecificCause().getMessage());
+				CreateBookRequest request = chunk.getFirst();
+				String constraint = violatedConstraint(e);
+				//solo el ISBN unico es un duplicado (otra alta del mismo ISBN se ha confirmado antes)
+				if (constraint != null && constraint.contains(Book.ISBN_UNIQUE)) {
+					seenIsbns.add(request.getIsbn());
+					return List.of(BulkBookResult.builder().index(offset).isbn(request.getIsbn())
+							.code(ResponseCodes.DUPLICATE).build());
+				}
+				return List.of(BulkBookResult.builder().index(offset).isbn(request.getIsbn())
+						.code(ResponseCodes.BAD_REQUEST)
+						.error(constraint != null ? "Viola la restriccion " + constraint : e.getMostSpecificCause().getMessage())
+						.build());
+			}
+			List<BulkBookResult> results = new ArrayList<>(chunk.size());
+			for (int i = 0; i < chunk.size(); i++) {
+				results.addAll(createChunk(List.of(chunk.get(i)), offset + i, seenIsbns, upsert));
+			}
+			return results;
+		}
+	}
+
+	/* Nombre (en minusculas) de la restriccion violada, o null si el driver no lo indica */
+	private static String violatedConstraint(DataIntegrityViolationException e) {
+		if (e.getCause() instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+			return violation.getConstraintName().toLowerCase(Locale.ROOT);
+		}
+		return null;
+	}
+
+	private boolean isValid(CreateBookRequest request) {
+		return request != null && StringUtils.hasText(request.getTitulo())
+				&& StringUtils.hasText(request.getAutor())
+				&& request.getFecha_de_publicacion() != null
+				&& StringUtils.hasText(request.getEditorial())
+				&& StringUtils.hasText(request.getCategoria())
+				&& request.getIsbn() != null
+				&& StringUtils.hasText(request.getPortada())
+				&& StringUtils.hasText(request.getSinopsis())
+				&& request.getVisible() != null
+				&& request.getStock() != null
+				&& request.getPrecio() != null;
+	}
+
+	private Book toBook(CreateBookRequest request) {
+		return Book.builder()
+				.titulo(request.getTitulo())
+				.autor(request.getAutor())
+				.fecha_de_publicacion(request.getFecha_de_publicacion())
+				.editorial(request.getEditorial())
+				.categoria(request.getCategoria())
+				.isbn(request.getIsbn())
+				.portada(request.getPortada())
+				.sinopsis(request.getSinopsis())
+				.stock(request.getStock())
+				.visible(request.getVisible())
+				.precio(request.getPrecio())
+				.build();
+	}
+
+	private BookDto toBookDto(CreateBookRequest request) {
+		return BookDto.builder()
+				.titulo(request.getTitulo())
+				.autor(request.getAutor())
+				.fecha_de_publicacion(request.getFecha_de_publicacion())
+				.editorial(request.getEditorial())
+				.categoria(request.getCategoria())
+				.isbn(request.getIsbn())
+				.portada(request.getPortada())
+				.sinopsis(request.getSinopsis())
+				.valoracion(request.getValoracion())
+				.visible(request.getVisible())
+				.stock(request.getStock())
+				.precio(request.getPrecio())
+				.build();
+	}
+
+	@Override
+	@Transactional
+	public Book updateBook(String bookId, String request, Long expectedVersion) {
 
 		//PATCH se implementa en este caso mediante Merge Patch: https://datatracker.ietf.org/doc/html/rfc7386
-		Book book = repository.getById(Long.valueOf(bookId));
+		//Se aplica sobre la entidad gestionada: Hibernate solo actualiza las columnas modificadas
+		Book book = repository.getByIdForUpdate(Long.valueOf(bookId));
 		if (book != null) {
+			checkVersion(book, expectedVersion);
 			try {
-				JsonMergePatch jsonMergePatch = JsonMergePatch.fromJson(objectMapper.readTree(request));
-				JsonNode target = jsonMergePatch.apply(objectMapper.readTree(objectMapper.writeValueAsString(book)));
-				Book patched = objectMapper.treeToValue(target, Book.class);
-				repository.save(patched);
-				return patched;
-			} catch (JsonProcessingException | JsonPatchException e) {
+				if (bookMergePatcher.apply(book, request) > 0) {
+					repository.save(book);
+				}
+				return book;
+			} catch (IOException | IllegalArgumentException e) {
 				log.error("Error updating book {}", bookId, e);
                 return null;
             }
@@ -142,15 +525,124 @@ public class BooksServiceImpl implements BooksService {
 	}
 
 	@Override
-	public Book updateBook(String bookId, BookDto updateRequest) {
-		Book book = repository.getById(Long.valueOf(bookId));
+	@Transactional
+	public Book updateBook(String bookId, BookDto updateRequest, Long expectedVersion) {
+		Book book = repository.getByIdForUpdate(Long.valueOf(bookId));
 		if (book != null) {
-			book.update(updateRequest);
-			repository.save(book);
+			checkVersion(book, expectedVersion);
+			//PUT sin cambios: no se escribe nada
+			if (book.update(updateRequest)) {
+				repository.save(book);
+			}
 			return book;
 		} else {
 			return null;
 		}
 	}
 
+	/* If-Match: el cliente modifica la version que leyo. Si otra escritura confirma entre esta
+	   comprobacion y el commit, la condicion sobre la columna version del UPDATE la rechaza igualmente */
+	private void checkVersion(Book book, Long expectedVersion) {
+		if (expectedVersion != null && !expectedVersion.equals(book.getVersion())) {
+			throw new ObjectOptimisticLockingFailureException(Book.class, book.getId());
+		}
+	}
+
+	@Override
+	@Transactional
+	public List<StockReservationItem> reserveStock(List<StockReservationItem> items) {
+
+		//Se agrupan las lineas del mismo libro y se procesan por id, siempre en el mismo orden, para no provocar interbloqueos
+		Map<Long, Integer> quantities = new TreeMap<>();
+		items.forEach(item -> quantities.merge(item.getBookId(), item.getCantidad(), Integer::sum));
+
+		List<StockReservationItem> rejected = new ArrayList<>();
+		quantities.forEach((bookId, cantidad) -> {
+			if (!repository.reserveStock(bookId, cantidad)) {
+				rejected.add(new StockReservationItem(bookId, cantidad));
+			}
+		});
+
+		//Todo o nada: si alguna linea no se puede servir se deshace la reserva completa
+		if (!rejected.isEmpty()) {
+			TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+		}
+		return rejected;
+	}
+
+	@Override
+	public CacheStatsDto getCacheStats() {
+		CacheStats stats = repository.cacheStats();
+		return CacheStatsDto.builder()
+				.size(repository.cacheSize())
+				.hits(stats.hitCount())
+				.misses(stats.missCount())
+				.hitRate(stats.hitRate())
+				.evictions(stats.evictionCount())
+				.build();
+	}
+
+	@Override
+	public CatalogueVersion getCatalogueVersion() {
+		return repository.catalogueVersion();
+	}
+
+	@Override
+	public BookChangesDto getChanges(String bootId, Long since, int limit) {
+		String currentBoot = repository.catalogueVersion().bootId();
+		if (bootId != null && !bootId.equals(currentBoot)) {
+			return null;
+		}
+		//Sin secuencia de partida solo se devuelve la posicion actual, para empezar a sincronizar desde ahi
+		long from = since != null ? since : repository.lastChange();
+		List<BookChange> changes = repository.changesSince(from, limit);
+		if (changes == null) {
+			return null;
+		}
+		long last = changes.isEmpty() ? from : changes.getLast().sequence();
+		return BookChangesDto.builder()
+				.bootId(currentBoot)
+				.lastSequence(last)
+				.hasMore(last < repository.lastChange())
+				.changes(changes)
+				.build();
+	}
+
+	@Override
+	public Runnable subscribeChanges(String bootId, Long since, Consumer<BookChange> listener) {
+		if (bootId != null && !bootId.equals(repository.catalogueVersion().bootId())) {
+			return null;
+		}
+		return repository.subscribeChanges(since != null ? since : repository.lastChange(), listener);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void exportBooks(OutputStream out) throws IOException {
+		//NDJSON: un libro por linea, volcando la salida por bloques para mantener el heap plano.
+		//Sin cache de JSON: cada libro se escribe una sola vez y no debe expulsar a los que se sirven a menudo
+		ObjectWriter writer = objectMapper.writerFor(Book.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+				.withAttribute(CachedBookSerializer.SKIP_CACHE, Boolean.TRUE);
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.setRootValueSeparator(null);
+			int[] written = {0};
+			repository.forEachBook(book -> {
+				try {
+					writer.writeValue(generator, book);
+					generator.writeRaw('\n');
+					if (++written[0] % exportFlushEvery == 0) {
+						generator.flush();
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			generator.flush();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
 }
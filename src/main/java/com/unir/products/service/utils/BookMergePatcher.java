@@ -0,0 +1,108 @@
+package com.unir.products.service.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.unir.products.data.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/* JSON Merge Patch (RFC 7386) aplicado directamente sobre la entidad: recorre el documento una sola
+   vez con el parser en streaming y escribe cada campo con su setter, sin serializar el libro ni
+   construir arboles intermedios. Solo se tocan los campos cuyo valor cambia. */
+@Component
+public class BookMergePatcher {
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Field<?>> fields = new HashMap<>();
+
+    public BookMergePatcher(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        register("titulo", String.class, Book::getTitulo, Book::setTitulo);
+        register("autor", String.class, Book::getAutor, Book::setAutor);
+        register("fecha_de_publicacion", LocalDate.class, Book::getFecha_de_publicacion, Book::setFecha_de_publicacion);
+        register("editorial", String.class, Book::getEditorial, Book::setEditorial);
+        register("categoria", String.class, Book::getCategoria, Book::setCategoria);
+        register("isbn", String.class, Book::getIsbn, Book::setIsbn);
+        register("portada", String.class, Book::getPortada, Book::setPortada);
+        register("sinopsis", String.class, Book::getSinopsis, Book::setSinopsis);
+        register("valoracion", Double.class, Book::getValoracion, Book::setValoracion);
+        register("visible", Boolean.class, Book::getVisible, Book::setVisible);
+        register("stock", Integer.class, Book::getStock, Book::setStock);
+        register("precio", Double.class, Book::getPrecio, Book::setPrecio);
+    }
+
+    /* Valida el parche completo antes de modificar nada. Devuelve el numero de campos modificados.
+       Lanza IOException si el JSON no es valido o un valor no encaja con el tipo del campo, e
+       IllegalArgumentException si el parche no es un objeto o contiene campos desconocidos. */
+    public int apply(Book book, String patch) throws IOException {
+        List<Change<?>> changes = new ArrayList<>();
+
+        try (JsonParser parser = objectMapper.createParser(patch)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("El parche debe ser un objeto JSON");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("id".equals(name)) {
+                    //el id no se puede modificar, pero se admite si coincide con el del libro
+                    Long id = token == JsonToken.VALUE_NULL ? null : parser.getValueAsLong();
+                    if (!token.isNumeric() || !Objects.equals(id, book.getId())) {
+                        throw new IllegalArgumentException("No se puede modificar el id del libro");
+                    }
+                    continue;
+                }
+                Field<?> field = fields.get(name);
+                if (field == null) {
+                    throw new IllegalArgumentException("Campo desconocido: " + name);
+                }
+                changes.add(field.read(parser, token));
+            }
+            if (parser.nextToken() != null) {
+                throw new IllegalArgumentException("Contenido inesperado tras el parche");
+            }
+        }
+
+        int modified = 0;
+        for (Change<?> change : changes) {
+            if (change.applyTo(book)) {
+                modified++;
+            }
+        }
+        return modified;
+    }
+
+    private <T> void register(String name, Class<T> type, Function<Book, T> getter, BiConsumer<Book, T> setter) {
+        fields.put(name, new Field<>(objectMapper.readerFor(type), getter, setter));
+    }
+
+    private record Field<T>(ObjectReader reader, Function<Book, T> getter, BiConsumer<Book, T> setter) {
+
+        Change<T> read(JsonParser parser, JsonToken token) throws IOException {
+            T value = token == JsonToken.VALUE_NULL ? null : reader.readValue(parser);
+            return new Change<>(this, value);
+        }
+    }
+
+    private record Change<T>(Field<T> field, T value) {
+
+        boolean applyTo(Book book) {
+            if (Objects.equals(field.getter().apply(book), value)) {
+                return false;
+            }
+            field.setter().accept(book, value);
+            return true;
+        }
+    }
+}
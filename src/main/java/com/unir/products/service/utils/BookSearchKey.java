@@ -0,0 +1,53 @@
+package com.unir.products.service.utils;
+
+import com.unir.products.controller.model.BookSearchCriteria;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+/* Clave normalizada de una busqueda: dos peticiones con la misma clave devuelven los mismos libros.
+   - Los textos vacios equivalen a no filtrar.
+   - q, titulo, autor y editorial se comparan sin distinguir mayusculas (LIKE sobre lower() e indice de texto).
+   - conStock=false equivale a no filtrar y -0.0 a 0.0.
+   - Un rango vacio (minimo mayor que maximo) se marca como tal para no consultar nada. */
+public record BookSearchKey(long epoch, String view, String q,
+                            String titulo, String autor, String editorial,
+                            String categoria, String isbn,
+                            LocalDate fechaDesde, LocalDate fechaHasta,
+                            Double valoracionMin, Boolean visible, boolean conStock,
+                            Double precioMin, Double precioMax,
+                            Integer limit, String cursor, String sort,
+                            boolean emptyRange) {
+
+    public static BookSearchKey of(long epoch, String view, BookSearchCriteria criteria) {
+        Double precioMin = number(criteria.getPrecioMin());
+        Double precioMax = number(criteria.getPrecioMax());
+        LocalDate desde = criteria.getFechaDePublicacionDesde();
+        LocalDate hasta = criteria.getFechaDePublicacionHasta();
+        boolean emptyRange = (precioMin != null && precioMax != null && precioMin > precioMax)
+                || (desde != null && hasta != null && desde.isAfter(hasta));
+
+        return new BookSearchKey(epoch, view, folded(criteria.getQ()),
+                folded(criteria.getTitulo()), folded(criteria.getAutor()), folded(criteria.getEditorial()),
+                text(criteria.getCategoria()), text(criteria.getIsbn()),
+                desde, hasta,
+                number(criteria.getValoracionMin()), criteria.getVisible(), Boolean.TRUE.equals(criteria.getConStock()),
+                precioMin, precioMax,
+                criteria.getLimit(), text(criteria.getCursor()), text(criteria.getSort()),
+                emptyRange);
+    }
+
+    private static String text(String value) {
+        return StringUtils.hasText(value) ? value : null;
+    }
+
+    private static String folded(String value) {
+        return StringUtils.hasText(value) ? value.toLowerCase(Locale.ROOT) : null;
+    }
+
+    //sin el Double explicito el operador ternario desempaqueta value y falla con null
+    private static Double number(Double value) {
+        return value != null && value == 0.0 ? Double.valueOf(0.0) : value;
+    }
+}
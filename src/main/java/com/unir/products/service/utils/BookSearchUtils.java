@@ -11,7 +11,8 @@ public class BookSearchUtils {
 
     public static boolean criteriaAreNotEmpty(BookSearchCriteria criteria) {
         if (criteria == null) return false;
-        return StringUtils.hasText(criteria.getTitulo())
+        return StringUtils.hasText(criteria.getQ())
+                || StringUtils.hasText(criteria.getTitulo())
                 || StringUtils.hasText(criteria.getAutor())
                 || criteria.getFechaDePublicacionDesde() != null
                 || criteria.getFechaDePublicacionHasta() != null
@@ -24,4 +25,9 @@ public class BookSearchUtils {
                 || criteria.getPrecioMin() != null
                 || criteria.getPrecioMax() != null;
     }
+
+    /* Con q y sin orden explicito los resultados se ordenan por relevancia (sin cursor) */
+    public static boolean isRankedSearch(BookSearchCriteria criteria) {
+        return StringUtils.hasText(criteria.getQ()) && !StringUtils.hasText(criteria.getSort());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package com.unir.products.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/* Lectura de las propias escrituras con una replica que se queda atras: la replica es otra base H2
+   que recibe una copia del primario al empezar cada prueba y ninguna escritura despues. Otro cliente
+   lee de la replica tras la escritura; el cliente que escribio no debe recibir esa lectura desde las caches. */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rw-primary;Mode=MySQL;DB_CLOSE_DELAY=-1",
+        "catalogue.datasource.routing.enabled=true",
+        "catalogue.datasource.routing.replica-urls=" + ReadYourWritesReplicaTest.REPLICA_URL,
+        "catalogue.datasource.routing.read-your-writes-window=1m",
+        "eureka.client.enabled=false"
+})
+@AutoConfigureMockMvc
+class ReadYourWritesReplicaTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:rw-replica;Mode=MySQL;DB_CLOSE_DELAY=-1";
+
+    private static final String WRITER = "writer";
+    private static final String READER = "reader";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /* La replica se pone al dia con el primario y a partir de aqui se queda atras */
+    @BeforeEach
+    void syncReplica() throws Exception {
+        Path script = Files.createTempFile("rw-primary", ".sql");
+        try {
+            jdbcTemplate.execute("SCRIPT TO '" + script + "'");
+            try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+                 Statement statement = replica.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+                statement.execute("RUNSCRIPT FROM '" + script + "'");
+            }
+        } finally {
+            Files.deleteIfExists(script);
+        }
+    }
+
+    @Test
+    void writerReadsOwnBookAfterOtherClientReadsLaggingReplica() throws Exception {
+        rename(1L, "Titulo escrito en el primario");
+        assertThat(replicaTitle(1L)).isEqualTo("Alas de sangre");
+
+        mockMvc.perform(get("/books/1").header(ReadYourWritesFilter.CLIENT_HEADER, READER))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/books/1").header(ReadYourWritesFilter.CLIENT_HEADER, WRITER))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value("Titulo escrito en el primario"));
+    }
+
+    @Test
+    void writerSearchIsNotServedFromReplicaCachedResult() throws Exception {
+        rename(6L, "Otro titulo del primario");
+        assertThat(replicaTitle(6L)).isEqualTo("Alas de hierro");
+
+        //El otro cliente lee de la replica: todavia ve el titulo anterior
+        mockMvc.perform(get("/books").param("categoria", "Fantasía romántica")
+                        .header(ReadYourWritesFilter.CLIENT_HEADER, READER))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == 6)].titulo").value("Alas de hierro"));
+
+        mockMvc.perform(get("/books").param("categoria", "Fantasía romántica")
+                        .header(ReadYourWritesFilter.CLIENT_HEADER, WRITER))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == 6)].titulo").value("Otro titulo del primario"));
+
+        //El resultado de la replica no ha quedado en la cache: al ponerse al dia, el otro cliente ve el cambio
+        syncReplica();
+        mockMvc.perform(get("/books").param("categoria", "Fantasía romántica")
+                        .header(ReadYourWritesFilter.CLIENT_HEADER, READER))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == 6)].titulo").value("Otro titulo del primario"));
+    }
+
+    @Test
+    void clientsBehindSameGatewayAreNotPinnedTogether() throws Exception {
+        mockMvc.perform(patch("/books/2")
+                        .with(gateway("203.0.113.10"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"titulo\":\"Titulo del primer cliente\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/books").param("categoria", "Narrativa contemporánea").with(gateway("203.0.113.10")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == 2)].titulo").value("Titulo del primer cliente"));
+
+        //Otro cliente detras del mismo gateway no queda fijado al primario: su busqueda sale de la replica
+        mockMvc.perform(get("/books").param("categoria", "Narrativa contemporánea").with(gateway("203.0.113.20")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == 2)].titulo").value("La mala costumbre"));
+    }
+
+    /* Peticion que llega desde la direccion del gateway con la del cliente en X-Forwarded-For */
+    private static RequestPostProcessor gateway(String clientAddress) {
+        return request -> {
+            request.setRemoteAddr("10.0.0.1");
+            request.addHeader("X-Forwarded-For", clientAddress);
+            return request;
+        };
+    }
+
+    private void rename(Long id, String titulo) throws Exception {
+        mockMvc.perform(patch("/books/" + id)
+                        .header(ReadYourWritesFilter.CLIENT_HEADER, WRITER)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"titulo\":\"" + titulo + "\"}"))
+                .andExpect(status().isOk());
+    }
+
+    private static String replicaTitle(Long id) throws Exception {
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Statement statement = replica.createStatement();
+             ResultSet row = statement.executeQuery("select titulo from libros where id = " + id)) {
+            return row.next() ? row.getString(1) : null;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.unir.products.data;
+
+import com.unir.products.controller.model.BookSearchCriteria;
+import com.unir.products.data.model.Book;
+import com.unir.products.data.search.BookFilterIndex;
+import com.unir.products.data.search.BookIndex;
+import com.unir.products.data.search.BookTextIndex;
+import com.unir.products.data.utils.Consts;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* Una escritura confirmada mientras se reconstruyen los indices no se pierde: la reconstruccion lee el
+   catalogo antes de la escritura y los indices que se reconstruyen despues no la tendrian. Un indice de
+   prueba, el primero en reconstruirse, detiene la reconstruccion hasta que la escritura se ha confirmado. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:rebuild;Mode=MySQL;DB_CLOSE_DELAY=-1",
+        "eureka.client.enabled=false"
+})
+class BookIndexRebuildTest {
+
+    private static final String TITULO = "Escrito durante la reconstruccion";
+
+    @Autowired
+    private BookRepository repository;
+
+    @Autowired
+    private BookTextIndex textIndex;
+
+    @Autowired
+    private BookFilterIndex filterIndex;
+
+    @Autowired
+    private GateIndex gate;
+
+    @Test
+    void writeCommittedDuringRebuildIsKept() throws Exception {
+        gate.arm();
+        CompletableFuture<Void> rebuild = CompletableFuture.runAsync(repository::rebuildIndexes);
+        assertThat(gate.entered.await(10, TimeUnit.SECONDS)).isTrue();
+
+        Book saved = repository.save(Book.builder()
+                .titulo(TITULO)
+                .autor("Autora de prueba")
+                .fecha_de_publicacion(LocalDate.of(2024, 1, 1))
+                .editorial("Editorial de prueba")
+                .categoria("Categoria de reconstruccion")
+                .isbn("978-00-00-00000-1")
+                .portada("https://example.com/portada.jpg")
+                .sinopsis("Sinopsis")
+                .valoracion(4.0)
+                .visible(true)
+                .stock(3)
+                .precio(12.0)
+                .build());
+
+        gate.release.countDown();
+        rebuild.get(10, TimeUnit.SECONDS);
+
+        assertThat(textIndex.match(Consts.TITULO, TITULO)).containsExactly(saved.getId());
+        BookSearchCriteria criteria = new BookSearchCriteria();
+        criteria.setCategoria("Categoria de reconstruccion");
+        assertThat(filterIndex.filter(criteria).contains(saved.getId().intValue())).isTrue();
+    }
+
+    /* Se reconstruye antes que los demas indices y, armado, espera a que la prueba lo libere */
+    static class GateIndex implements BookIndex {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean armed;
+
+        void arm() {
+            armed = true;
+        }
+
+        @Override
+        public void rebuild(Collection<Book> books) {
+            if (!armed) return;
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void index(Book book) {
+        }
+
+        @Override
+        public void remove(Long id) {
+        }
+    }
+
+    @TestConfiguration
+    static class GateConfig {
+
+        @Bean
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        GateIndex gateIndex() {
+            return new GateIndex();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.unir.products.data;
+
+import com.unir.products.controller.model.BookSearchCriteria;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* Comprueba con EXPLAIN (H2 en modo MySQL) que el SQL que genera BookRepository.search para cada
+   forma de filtro usa el indice idx_libros_* correspondiente y no recorre la tabla entera.
+   Los indices en memoria se desactivan: si no, la busqueda llega a SQL como una lista de ids (IN)
+   y el plan deja de depender de los indices de la tabla. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.unir.products.data.RecordingStatementInspector",
+        "catalogue.search.text-index.enabled=false",
+        "catalogue.search.filter-index.enabled=false",
+        "catalogue.cache.search.max-memory=0",
+        "eureka.client.enabled=false"
+})
+class BookSearchPlanTest {
+
+    @Autowired
+    private BookRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clearStatements() {
+        RecordingStatementInspector.clear();
+    }
+
+    static Stream<Arguments> shapes() {
+        return Stream.of(
+                shape("categoria EQUAL", "idx_libros_categoria", c -> c.setCategoria("Fantasía romántica")),
+                shape("visible EQUAL + stock GREATER_THAN", "idx_libros_visible_stock", c -> {
+                    c.setVisible(true);
+                    c.setConStock(true);
+                }),
+                shape("visible EQUAL", "idx_libros_visible_stock", c -> c.setVisible(false)),
+                shape("precio GREATER_THAN_EQUAL + LESS_THAN_EQUAL", "idx_libros_precio", c -> {
+                    c.setPrecioMin(15.0);
+                    c.setPrecioMax(20.0);
+                }),
+                shape("valoracion GREATER_THAN_EQUAL", "idx_libros_valoracion", c -> c.setValoracionMin(4.0)),
+                shape("fecha_de_publicacion GREATER_THAN_EQUAL + LESS_THAN_EQUAL", "idx_libros_fecha_de_publicacion", c -> {
+                    c.setFechaDePublicacionDesde(LocalDate.of(2024, 1, 1));
+                    c.setFechaDePublicacionHasta(LocalDate.of(2024, 3, 31));
+                }),
+                shape("isbn EQUAL", "idx_libros_isbn", c -> c.setIsbn("978-84-08-27979-7")),
+                shape("precio ordenado por precio", "idx_libros_precio", c -> {
+                    c.setPrecioMin(15.0);
+                    c.setSort("precio");
+                }));
+    }
+
+    @ParameterizedTest(name = "{0} -> {1}")
+    @MethodSource("shapes")
+    void searchUsesIndex(String shape, String index, BookSearchCriteria criteria) {
+        repository.search(criteria);
+
+        String plan = explain(searchStatement());
+        assertThat(plan.toLowerCase(Locale.ROOT))
+                .as("plan de %s", shape)
+                .contains(index)
+                .doesNotContain("tablescan");
+    }
+
+    @ParameterizedTest(name = "{0} -> {1}")
+    @MethodSource("shapes")
+    void summarySearchUsesIndex(String shape, String index, BookSearchCriteria criteria) {
+        repository.searchSummaries(criteria);
+
+        String plan = explain(searchStatement());
+        assertThat(plan.toLowerCase(Locale.ROOT))
+                .as("plan de %s (resumen)", shape)
+                .contains(index)
+                .doesNotContain("tablescan");
+    }
+
+    private static Arguments shape(String name, String index, Consumer<BookSearchCriteria> filters) {
+        BookSearchCriteria criteria = new BookSearchCriteria();
+        filters.accept(criteria);
+        return Arguments.of(name, index, criteria);
+    }
+
+    private static String searchStatement() {
+        List<String> selects = RecordingStatementInspector.statements().stream()
+                .filter(sql -> sql.toLowerCase(Locale.ROOT).startsWith("select") && sql.toLowerCase(Locale.ROOT).contains("libros"))
+                .toList();
+        assertThat(selects).as("consultas de la busqueda").hasSize(1);
+        return selects.getFirst();
+    }
+
+    /* EXPLAIN no ejecuta la consulta: los parametros se enlazan a null solo para poder prepararla */
+    private String explain(String sql) {
+        return String.join("\n", jdbcTemplate.query("EXPLAIN " + sql,
+                statement -> {
+                    int parameters = statement.getParameterMetaData().getParameterCount();
+                    for (int i = 1; i <= parameters; i++) {
+                        statement.setObject(i, null);
+                    }
+                },
+                (row, rowNum) -> row.getString(1)));
+    }
+}